@@ -1,5 +1,7 @@
 package ch.epfl.gameboj;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
@@ -19,6 +21,7 @@ import ch.epfl.gameboj.component.memory.RamController;
 public final class GameBoy {
 
 	private Bus bus;
+	private Cartridge cartridge;
 	private Ram ramWork;
 	private Ram ramEcho;
 	private RamController workRamController;
@@ -29,8 +32,13 @@ public final class GameBoy {
 	private long currentCycle;
 	private LcdController lcdController;
 	private Joypad joypad;
+	// the state saved by stateDigest(), allocated by its first call
+	private ByteBuffer digestBuffer;
 	private static final long cyclePerSecond = 1 << 20;
 	private static final double cyclePerNanosecond = cyclePerSecond * Math.pow(10, -9); 
+	private static final int STATE_MAGIC = 0x47424A53; // "GBJS"
+	private static final int STATE_VERSION = 2;
+	private static final int STATE_HEADER_SIZE = 3 * Integer.BYTES;
 
 	/**
 	 * Constructs a GameBoy by creating the necessary components: - Bus - Cpu -
@@ -45,6 +53,7 @@ public final class GameBoy {
 		if (cartridge == null)
 			throw new NullPointerException("The given cartridge is null");
 
+		this.cartridge = cartridge;
 		bus = new Bus();
 
 		currentCycle = 0;
@@ -74,9 +83,57 @@ public final class GameBoy {
 
 	}
 
+	private GameBoy(GameBoy parent) {
+		this(parent.cartridge.fork());
+		copyComponentsFrom(parent);
+	}
+
+	/**
+	 * returns an independent GameBoy in the same state as this one, like one
+	 * loading a state saved by this one would be. The memories are shared
+	 * copy-on-write, by pages: a page is only copied by the first of the two
+	 * GameBoys writing in it, so forking is cheap. Must be called by the thread
+	 * running this GameBoy; the fork can then be run by any other thread.
+	 * 
+	 * @return the fork.
+	 */
+	public GameBoy fork() {
+		return new GameBoy(this);
+	}
+
+	/**
+	 * puts this GameBoy in the same state as the given one, sharing the memories
+	 * copy-on-write as fork() does. The pages which this GameBoy used before are
+	 * released, so a GameBoy refreshed regularly doesn't keep the pages of the
+	 * given one shared, unlike the forks which are dropped. Must be called by
+	 * the thread running the given GameBoy, and not while this one is run.
+	 * 
+	 * @param that
+	 *            the GameBoy to copy.
+	 * @throws IllegalArgumentException
+	 *             if the cartridge of the given GameBoy hasn't the Rom of the
+	 *             cartridge of this one.
+	 */
+	public void copyFrom(GameBoy that) throws IllegalArgumentException {
+		cartridge.copyFrom(that.cartridge);
+		copyComponentsFrom(that);
+	}
+
+	private void copyComponentsFrom(GameBoy that) {
+		currentCycle = that.currentCycle;
+		cpu.copyFrom(that.cpu);
+		timer.copyFrom(that.timer);
+		lcdController.copyFrom(that.lcdController);
+		joypad.copyFrom(that.joypad);
+		ramWork.copyFrom(that.ramWork);
+		ramEcho.copyFrom(that.ramEcho);
+		bootRomController.copyFrom(that.bootRomController);
+	}
+
 	/**
 	 * Simulates the functioning of the GameBoy from the beginning(cycle = 0) to the
-	 * given ( as an argument) cycle minus one.
+	 * given ( as an argument) cycle minus one. The keys posted to the joypad are
+	 * applied first.
 	 * 
 	 * @param cycle
 	 * @throws IllegalArgumentException
@@ -86,12 +143,156 @@ public final class GameBoy {
 		if (this.currentCycle > cycle)
 			throw new IllegalArgumentException("The given Cycle is strictly smaller than the current Cycle");
 
-		while (this.currentCycle < cycle) {
-			timer.cycle(this.currentCycle);
-			lcdController.cycle(currentCycle);
-			cpu.cycle(this.currentCycle);
-			this.currentCycle += 1;
+		joypad.applyPostedKeys();
+
+		while (this.currentCycle < cycle)
+			cycle();
+	}
+
+	/**
+	 * Simulates the functioning of the GameBoy until the LcdController ended the
+	 * given number of frames more, i.e. until the beginning of the VBlank of the
+	 * last one. As the LCD can be off, the simulation stops anyway after the given
+	 * number of frames plus one of cycles. The keys posted to the joypad are
+	 * applied first.
+	 * 
+	 * @param count
+	 *            the number of frames.
+	 * @throws IllegalArgumentException
+	 *             if the number of frames is negative.
+	 */
+	public void runFrames(int count) throws IllegalArgumentException {
+		Preconditions.checkArgument(count >= 0);
+		if (count == 0)
+			return;
+
+		joypad.applyPostedKeys();
+
+		long frame = lcdController.frames() + count;
+		long limit = currentCycle + (count + 1L) * LcdController.CYCLES_PER_FRAME;
+		while (lcdController.frames() < frame && currentCycle < limit)
+			cycle();
+	}
+
+	private void cycle() {
+		timer.cycle(this.currentCycle);
+		lcdController.cycle(currentCycle);
+		cpu.cycle(this.currentCycle);
+		this.currentCycle += 1;
+	}
+
+	/**
+	 * returns the number of bytes of a state saved by saveState, which is the same
+	 * for all the GameBoys with the same kind of cartridge.
+	 * 
+	 * @return the size of a save state.
+	 */
+	public int stateSize() {
+		return STATE_HEADER_SIZE + bodySize();
+	}
+
+	private int bodySize() {
+		return Long.BYTES + cpu.stateSize() + timer.stateSize() + lcdController.stateSize() + joypad.stateSize()
+				+ ramWork.stateSize() + ramEcho.stateSize() + bootRomController.stateSize();
+	}
+
+	/**
+	 * saves the state of the whole GameBoy at the position of the given buffer,
+	 * preceded by a header identifying its format, and advances it. The keys posted
+	 * to the joypad and not yet applied are not saved.
+	 * 
+	 * @param buffer
+	 *            the buffer, with at least stateSize() bytes remaining.
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not have enough bytes remaining.
+	 */
+	public void saveState(ByteBuffer buffer) throws IllegalArgumentException {
+		int size = bodySize();
+		Preconditions.checkArgument(buffer.remaining() >= STATE_HEADER_SIZE + size);
+		buffer.putInt(STATE_MAGIC).putInt(STATE_VERSION).putInt(size);
+		buffer.putLong(currentCycle);
+		cpu.saveState(buffer);
+		timer.saveState(buffer);
+		lcdController.saveState(buffer);
+		joypad.saveState(buffer);
+		ramWork.saveState(buffer);
+		ramEcho.saveState(buffer);
+		bootRomController.saveState(buffer);
+	}
+
+	/**
+	 * loads a state saved by saveState, on a GameBoy with the same kind of
+	 * cartridge, from the position of the given buffer, and advances it. The
+	 * rendering configuration of the LcdController is kept.
+	 * 
+	 * @param buffer
+	 *            the buffer.
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not contain a state of the same format and
+	 *             size, in which case the GameBoy is not modified.
+	 */
+	public void loadState(ByteBuffer buffer) throws IllegalArgumentException {
+		int size = bodySize();
+		Preconditions.checkArgument(buffer.remaining() >= STATE_HEADER_SIZE + size);
+		int start = buffer.position();
+		if (buffer.getInt() != STATE_MAGIC || buffer.getInt() != STATE_VERSION || buffer.getInt() != size) {
+			buffer.position(start);
+			throw new IllegalArgumentException("Invalid or incompatible save state");
 		}
+		currentCycle = buffer.getLong();
+		cpu.loadState(buffer);
+		timer.loadState(buffer);
+		lcdController.loadState(buffer);
+		joypad.loadState(buffer);
+		ramWork.loadState(buffer);
+		ramEcho.loadState(buffer);
+		bootRomController.loadState(buffer);
+	}
+
+	/**
+	 * returns a digest of the current state of the GameBoy, as saved by saveState
+	 * into a buffer allocated once per GameBoy. Must be called by the thread
+	 * running it.
+	 * 
+	 * @return the digest of the state.
+	 * @see #stateDigest(ByteBuffer)
+	 */
+	public long stateDigest() {
+		if (digestBuffer == null)
+			digestBuffer = ByteBuffer.allocate(stateSize());
+		digestBuffer.clear();
+		saveState(digestBuffer);
+		digestBuffer.flip();
+		return stateDigest(digestBuffer);
+	}
+
+	/**
+	 * returns a 64 bits FNV-1a hash of the state saved by saveState at the
+	 * position of the given buffer, which isn't modified. The images of the
+	 * LcdController and the other bytes of its state which only depend on which
+	 * frames were drawn are left out, so two GameBoys emulated identically have
+	 * the same digest whatever their render policies.
+	 * 
+	 * @param buffer
+	 *            the buffer, with at least stateSize() bytes remaining.
+	 * @return the digest of the state.
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not have enough bytes remaining.
+	 */
+	public long stateDigest(ByteBuffer buffer) throws IllegalArgumentException {
+		int size = stateSize();
+		Preconditions.checkArgument(buffer.remaining() >= size);
+		int start = buffer.position();
+		int outputEnd = start + STATE_HEADER_SIZE + Long.BYTES + cpu.stateSize() + timer.stateSize()
+				+ lcdController.stateSize();
+		int outputStart = outputEnd - lcdController.outputStateSize();
+		long hash = 0xCBF29CE484222325L;
+		for (int i = start; i < start + size; ++i) {
+			if (i == outputStart)
+				i = outputEnd;
+			hash = (hash ^ (buffer.get(i) & 0xFF)) * 0x100000001B3L;
+		}
+		return hash;
 	}
 
 	/**
@@ -125,6 +326,14 @@ public final class GameBoy {
 		return this.cpu;
 	}
 
+	/**
+	 * 
+	 * @return the Cartridge (cartridge).
+	 */
+	public Cartridge cartridge() {
+		return cartridge;
+	}
+
 	public LcdController lcdController() {
 		return lcdController;
 	}
@@ -1,9 +1,12 @@
 package ch.epfl.gameboj;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Stateful;
 
-public final class RegisterFile<E extends Register> {
+public final class RegisterFile<E extends Register> implements Stateful {
     /**
      * RegisterFile class. the wires between components
      * 
@@ -86,4 +89,44 @@ public final class RegisterFile<E extends Register> {
         Bits.set(banc[reg.index()], bit.index(), newValue);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return banc.length;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(banc);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(banc);
+    }
+
+    /**
+     * copies the values of the registers of the given file into this one.
+     * 
+     * @param that
+     *            a file of the same registers.
+     */
+    public void copyFrom(RegisterFile<E> that) {
+        System.arraycopy(that.banc, 0, banc, 0, banc.length);
+    }
+
 }
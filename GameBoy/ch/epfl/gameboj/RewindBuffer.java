@@ -0,0 +1,242 @@
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * the recent history of a GameBoy, as a ring of snapshots of its whole state
+ * taken by capture(), which can be restored one by one, newest first, by
+ * stepBack(). Every keyframeInterval snapshots, one is kept whole (a keyframe),
+ * the others only as the bytes which changed since the previous one; both are
+ * run-length encoded into a fixed budget of bytes, the oldest snapshots being
+ * discarded, a keyframe and its followers at a time, to make room for the new
+ * ones. Nothing is allocated after the construction.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class RewindBuffer {
+
+	// the number of unchanged bytes ending a run of changed ones
+	private static final int MIN_UNCHANGED_RUN = 4;
+
+	private final GameBoy gameBoy;
+	private final int keyframeInterval;
+	private final byte[] data;
+	private final int[] offsets, lengths;
+	private final boolean[] keyframes;
+	private final byte[] zeros, encoded;
+	private byte[] current, previous;
+	private ByteBuffer currentBuffer, previousBuffer;
+	private int first, count, end, sinceKeyframe, cursor;
+
+	/**
+	 * constructs an empty history of the given GameBoy.
+	 *
+	 * @param gameBoy
+	 * @param capacity
+	 *            the maximal number of snapshots kept.
+	 * @param keyframeInterval
+	 *            the number of snapshots from a keyframe to the next one.
+	 * @param budgetBytes
+	 *            the number of bytes for the encoded snapshots.
+	 * @throws NullPointerException
+	 *             if the GameBoy is null.
+	 * @throws IllegalArgumentException
+	 *             if the capacity or the interval isn't strictly positive, or if
+	 *             the budget can't hold two keyframes.
+	 */
+	public RewindBuffer(GameBoy gameBoy, int capacity, int keyframeInterval, int budgetBytes)
+			throws NullPointerException, IllegalArgumentException {
+		this.gameBoy = Objects.requireNonNull(gameBoy);
+		int stateSize = gameBoy.stateSize();
+		Preconditions.checkArgument(capacity > 0 && keyframeInterval > 0);
+		Preconditions.checkArgument(budgetBytes / 2 >= maxEncodedSize(stateSize));
+		this.keyframeInterval = keyframeInterval;
+		data = new byte[budgetBytes];
+		offsets = new int[capacity];
+		lengths = new int[capacity];
+		keyframes = new boolean[capacity];
+		zeros = new byte[stateSize];
+		encoded = new byte[maxEncodedSize(stateSize)];
+		current = new byte[stateSize];
+		previous = new byte[stateSize];
+		currentBuffer = ByteBuffer.wrap(current);
+		previousBuffer = ByteBuffer.wrap(previous);
+	}
+
+	/**
+	 * takes a snapshot of the current state of the GameBoy, making it the newest
+	 * one.
+	 */
+	public void capture() {
+		currentBuffer.clear();
+		gameBoy.saveState(currentBuffer);
+
+		boolean keyframe = count == 0 || sinceKeyframe + 1 >= keyframeInterval;
+		if (!store(encode(keyframe ? zeros : previous), keyframe)) {
+			// the keyframe of the snapshot had to be discarded
+			keyframe = true;
+			store(encode(zeros), true);
+		}
+		sinceKeyframe = keyframe ? 0 : sinceKeyframe + 1;
+
+		byte[] bytes = current;
+		current = previous;
+		previous = bytes;
+		ByteBuffer buffer = currentBuffer;
+		currentBuffer = previousBuffer;
+		previousBuffer = buffer;
+	}
+
+	/**
+	 * discards the newest snapshot and restores the GameBoy to the one before,
+	 * which becomes the newest one. When the snapshots are taken after each
+	 * frame, this steps the GameBoy back by one frame.
+	 *
+	 * @return false, and does nothing, if there are less than two snapshots.
+	 */
+	public boolean stepBack() {
+		if (count < 2)
+			return false;
+		--count;
+		int newest = count - 1, keyframe = newest;
+		end = offsets[index(newest)] + lengths[index(newest)];
+		while (!keyframes[index(keyframe)])
+			--keyframe;
+		Arrays.fill(previous, (byte) 0);
+		for (int i = keyframe; i <= newest; ++i)
+			decode(offsets[index(i)], lengths[index(i)]);
+		sinceKeyframe = newest - keyframe;
+
+		previousBuffer.clear();
+		gameBoy.loadState(previousBuffer);
+		return true;
+	}
+
+	/**
+	 * discards all the snapshots.
+	 */
+	public void clear() {
+		first = count = end = sinceKeyframe = 0;
+	}
+
+	/**
+	 * @return the number of snapshots kept.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of bytes used by the snapshots kept.
+	 */
+	public int usedBytes() {
+		int used = 0;
+		for (int i = 0; i < count; ++i)
+			used += lengths[index(i)];
+		return used;
+	}
+
+	private static int maxEncodedSize(int stateSize) {
+		// each run of changed bytes costs at most two varints, less than the
+		// unchanged bytes before it, except for the first one
+		return stateSize + 2 * 5;
+	}
+
+	// the index in the ring of the i-th oldest snapshot
+	private int index(int i) {
+		return (first + i) % offsets.length;
+	}
+
+	// stores the encoded snapshot, returning false if it is a delta whose keyframe
+	// had to be discarded
+	private boolean store(int length, boolean keyframe) {
+		if (count == offsets.length)
+			discardOldest();
+		if (end + length > data.length) {
+			// the oldest snapshots are the ones after the end, which is skipped
+			while (count > 0 && offsets[first] >= end)
+				discardOldest();
+			end = 0;
+		}
+		while (count > 0 && offsets[first] < end + length && end < offsets[first] + lengths[first])
+			discardOldest();
+		if (count == 0 && !keyframe)
+			return false;
+
+		int i = index(count);
+		offsets[i] = end;
+		lengths[i] = length;
+		keyframes[i] = keyframe;
+		System.arraycopy(encoded, 0, data, end, length);
+		end += length;
+		++count;
+		return true;
+	}
+
+	// discards the oldest keyframe and the deltas depending on it
+	private void discardOldest() {
+		do {
+			first = index(1);
+			--count;
+		} while (count > 0 && !keyframes[first]);
+	}
+
+	// encodes the current state as runs of unchanged bytes followed by runs of
+	// changed ones, xored with the given base, and returns the encoded length
+	private int encode(byte[] base) {
+		byte[] state = current;
+		int n = state.length, i = 0;
+		cursor = 0;
+		while (i < n) {
+			int mismatch = Arrays.mismatch(state, i, n, base, i, n);
+			int changedStart = (mismatch < 0) ? n : i + mismatch;
+			int changedEnd = changedStart, unchanged = 0;
+			while (changedEnd < n && unchanged < MIN_UNCHANGED_RUN) {
+				unchanged = (state[changedEnd] == base[changedEnd]) ? unchanged + 1 : 0;
+				++changedEnd;
+			}
+			changedEnd -= unchanged;
+
+			putVarint(changedStart - i);
+			putVarint(changedEnd - changedStart);
+			for (int j = changedStart; j < changedEnd; ++j)
+				encoded[cursor++] = (byte) (state[j] ^ base[j]);
+			i = changedEnd;
+		}
+		return cursor;
+	}
+
+	// xors the encoded snapshot at the given offset into the previous state
+	private void decode(int offset, int length) {
+		int i = 0;
+		cursor = offset;
+		while (cursor < offset + length) {
+			i += getVarint();
+			int changed = getVarint();
+			for (int j = 0; j < changed; ++j)
+				previous[i++] ^= data[cursor++];
+		}
+	}
+
+	private void putVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			encoded[cursor++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		encoded[cursor++] = (byte) value;
+	}
+
+	private int getVarint() {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = data[cursor++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+}
@@ -6,21 +6,22 @@ import java.util.Objects;
 import ch.epfl.gameboj.Preconditions;
 
 /**
- * Vector of bits, it's size is a multiple of 32.
+ * Vector of bits, it's size is a multiple of 32. The bits are stored in 64 bits
+ * words, the bit of index i being the bit (i % 64) of the word (i / 64).
  *
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
- 
+
 public final class BitVector {
- 
+
 	public static void main(String[] args) {
-		
+
 	}
     /**
      * Constructs a BitVector of a certain size with a certain value in all of it's
      * bits.
-     * 
+     *
      * @param size
      *            of the bits vector.
      * @param initialValue
@@ -29,14 +30,14 @@ public final class BitVector {
      *             if the size is't a multiple of 32 or negative.
      */
     public BitVector(int size, boolean initialValue) throws IllegalArgumentException {
- 
-        this(BitVectorUtile(size, initialValue));
- 
+
+        this(BitVectorUtile(size, initialValue), size);
+
     }
- 
+
     /**
      * Constructs a BitVector of a certain size with all it's bits equal to 0.
-     * 
+     *
      * @param size
      *            of the bits vector.
      * @throws IllegalArgumentException
@@ -45,102 +46,182 @@ public final class BitVector {
     public BitVector(int size) throws IllegalArgumentException {
         this(size, false);
     }
- 
+
     /**
-     * 
+     * Constructs a BitVector from the given 32 bits elements, the element of index
+     * 0 containing the bits 0 to 31 of the vector.
+     *
+     * @param vectorElements
+     *            the 32 bits elements of the vector.
+     * @throws NullPointerException
+     *             if vectorElements is null.
+     */
+    public BitVector(int[] vectorElements) throws NullPointerException {
+        this(wordsOf(vectorElements), vectorElements.length * Integer.SIZE);
+    }
+
+    /**
+     *
      * @return size of the Vector
      */
     public int size() {
-        int size = vector.length * Integer.SIZE;
         return size;
     }
- 
+
     /**
      * test the given index's bit of the Vector
-     * 
+     *
      * @param index
      * @return Value of bit.
      */
     public boolean testBit(int index) throws IllegalArgumentException {
         Preconditions.checkArgument(index >= 0 && index < size());
-        return Bits.test(vector[indexTableau(index)], indexInt(index));
+        return ((words[index >>> 6] >>> index) & 1L) == 1L;
     }
- 
+
+    /**
+     * returns the 64 bits word of the given index, i.e. the bits 64 * index to
+     * 64 * index + 63 of the vector, the bits after the end of the vector being 0.
+     *
+     * @param index
+     *            of the word.
+     * @return the word.
+     * @throws IndexOutOfBoundsException
+     *             if the index isn't between 0 and (size + 63) / 64 excluded.
+     */
+    public long word(int index) throws IndexOutOfBoundsException {
+        return words[Objects.checkIndex(index, words.length)];
+    }
+
+    /**
+     * returns the vector whose bits are those of a where the bits of the mask are
+     * 1 and those of b elsewhere.
+     *
+     * @param mask
+     * @param a
+     * @param b
+     * @return the selection.
+     * @throws IllegalArgumentException
+     *             if the sizes of the vectors are different.
+     */
+    public static BitVector select(BitVector mask, BitVector a, BitVector b) throws IllegalArgumentException {
+        Preconditions.checkArgument(a.size == mask.size && b.size == mask.size);
+        long[] result = new long[mask.words.length];
+        OPERATIONS.select(mask.words, a.words, b.words, result);
+        return new BitVector(result, mask.size);
+    }
+
+    /**
+     * returns the vector whose each bit is the bit, of the same index modulo 64,
+     * of one of the 4 given words: t3 if the bits of high and low at that index
+     * are both 1, t2 if only the one of high is, t1 if only the one of low is, t0
+     * otherwise.
+     *
+     * @param high
+     * @param low
+     * @param t0
+     * @param t1
+     * @param t2
+     * @param t3
+     * @return the vector looked up.
+     * @throws IllegalArgumentException
+     *             if the sizes of the vectors are different.
+     */
+    public static BitVector lookup(BitVector high, BitVector low, long t0, long t1, long t2, long t3)
+            throws IllegalArgumentException {
+        Preconditions.checkArgument(low.size == high.size);
+        long[] result = new long[high.words.length];
+        OPERATIONS.lookup(high.words, low.words, t0, t1, t2, t3, result);
+        if (result.length > 0)
+            result[result.length - 1] &= lastWordMask(high.size);
+        return new BitVector(result, high.size);
+    }
+
+    /**
+     * returns true if select and lookup use the vector instructions of the
+     * processor, through the incubating Vector API, false if they combine the
+     * vectors one word at a time.
+     */
+    public static boolean vectorized() {
+        return !(OPERATIONS instanceof ScalarWordOperations);
+    }
+
     /**
-     * 
+     *
      * @return Complement of the Vector
      */
     public BitVector not()  {
         return logicOperator(null, logicOperation.NOT);
     }
- 
+
     /**
      * Does the logic and operation with the given BitVector.
-     * 
+     *
      * @param that
      *            , the other BitVector.
      * @return result of operation.
      * @throws IllegalArgumentException
      *              if their sizes are different
      * @throws NullPointerException
-     *              if parameter is null.  
+     *              if parameter is null.
      */
     public BitVector and(BitVector that)throws IllegalArgumentException, NullPointerException  {
         return logicOperator(that, logicOperation.AND);
     }
- 
+
     /**
      * Does the logic operation or with the given BitVector
-     * 
+     *
      * @param that
      *            , the other BitVector.
      * @return result of the operation.
      *  @throws IllegalArgumentException
      *              if their sizes are different
      * @throws NullPointerException
-     *              if parameter is null.  
+     *              if parameter is null.
      */
     public BitVector or(BitVector that)throws IllegalArgumentException, NullPointerException {
         return logicOperator(that, logicOperation.OR);
- 
+
     }
- 
+
     /**
      * shifts this a given distance to the left if distance positive, else to the
      * right.
-     * 
+     *
      * @param distance
      * @return this
      */
     public BitVector shift(int distance) {
         return extractZeroExtended(size(), -distance);
     }
- 
+
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.lang.Object#equals(java.lang.Object)
      */
     @Override
     public boolean equals(Object that) {
         if (that.getClass() != this.getClass())
             return false;
-        return Arrays.equals(this.vector, ((BitVector) that).vector);
+        BitVector b = (BitVector) that;
+        return size == b.size && Arrays.equals(this.words, b.words);
     }
- 
+
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.lang.Object#hashCode()
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(vector);
+        return Arrays.hashCode(words);
     }
- 
+
     /**
      * Returns the extraction of the zero-extended Vector version.
-     * 
+     *
      * @param size
      *            of the extraction.
      * @param startIndex
@@ -150,10 +231,10 @@ public final class BitVector {
     public BitVector extractZeroExtended(int size, int startIndex) {
         return extract(size, startIndex, extension.ZERO_EXTENSION);
     }
- 
+
     /**
      * Returns the extraction of the wrapped vector version.
-     * 
+     *
      * @param size
      *            of the extraction
      * @param startIndex
@@ -163,17 +244,17 @@ public final class BitVector {
     public BitVector extractWrapped(int size, int startIndex) {
         return extract(size, startIndex, extension.WRAPE_EXTENSION);
     }
- 
+
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.lang.Object#toString()
      */
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        for (int i = 0; i < tableSize(); ++i) {
-            b.append(Integer.toBinaryString(vector[i]));
+        for (int i = 0; i < size / Integer.SIZE; ++i) {
+            b.append(Integer.toBinaryString(chunk(words, size, i, extension.ZERO_EXTENSION)));
         }
         return b.toString();
     }
@@ -183,28 +264,27 @@ public final class BitVector {
     */
     @Override
     public BitVector clone() {
-    	int [] tempo = new int [tableSize()];
-    	for(int i =0; i< tableSize(); i++) {
-    		tempo[i] = vector[i];
-    	}
-    	return new BitVector(tempo);
+    	return new BitVector(Arrays.copyOf(words, words.length), size);
     }
-   
+
     /**
      * BitVector builder. It's principal purpose is to permit the construction of
-     * the vector each octet at a time.
+     * the vector each octet at a time. It also permits to apply the logic
+     * operations and the shift directly on the vector being built, without
+     * creating intermediate vectors.
      *
      * @author Karim Sabaa (269647)
      * @author Mohamed Elasfoury (289473)
      */
     public final static class Builder {
-         
-         
-         private int[] tempo;
-          
+
+
+         private long[] tempo;
+         private final int size;
+
          /**
          * Constructs a BitVector of a certain size with all it's bits equal to 0.
-         * 
+         *
          * @param size
          *            of the bits vector.
          * @return
@@ -213,10 +293,24 @@ public final class BitVector {
          */
         public Builder(int size) throws IllegalArgumentException {
             Preconditions.checkArgument(size>=0 && size%Integer.SIZE ==0);
-            tempo = new int[Math.floorDiv(size, Integer.SIZE)];
- 
+            tempo = new long[wordCount(size)];
+            this.size = size;
+
+        }
+
+        /**
+         * Constructs a builder whose bits are initially those of the given vector.
+         *
+         * @param initial
+         *            the vector to start from.
+         * @throws NullPointerException
+         *             if the vector is null.
+         */
+        public Builder(BitVector initial) throws NullPointerException {
+            tempo = Arrays.copyOf(initial.words, initial.words.length);
+            size = initial.size;
         }
- 
+
         /**
          * define the value of the octet at the given index
          *
@@ -229,144 +323,250 @@ public final class BitVector {
          *             if the given int isn't an octet.
          */
         public Builder setByte(int index, int that) throws IndexOutOfBoundsException, IllegalArgumentException {
-            if(tempo==null) throw new IllegalStateException();
+            checkNotBuilt();
             Preconditions.checkBits8(that);
-            if (!(index >= 0 && index * Byte.SIZE < tempo.length*Integer.SIZE))
+            if (!(index >= 0 && index * Byte.SIZE < size))
                 throw new IndexOutOfBoundsException();
-             
-            int indexTable = Math.floorDiv(index * Byte.SIZE, Integer.SIZE);
-            for (int i = 0; i < Byte.SIZE; ++i) 
-                tempo[indexTable] = Bits.set(tempo[indexTable], Math.floorMod(index * Byte.SIZE, Integer.SIZE) + i,
-                        Bits.test(that, i));
+
+            int shift = (index * Byte.SIZE) % Long.SIZE;
+            int indexTable = (index * Byte.SIZE) / Long.SIZE;
+            tempo[indexTable] = (tempo[indexTable] & ~(0xFFL << shift)) | ((long) that << shift);
             return this;
         }
- 
+
+        /**
+         * define the value of the 64 bits word at the given index, the bits after
+         * the end of the vector being ignored.
+         *
+         * @param index
+         *            of the word
+         * @param word
+         *            the new value of the word
+         * @return this
+         * @throws IndexOutOfBoundsException
+         *             if the index of the word isn't correct.
+         */
+        public Builder setWord(int index, long word) throws IndexOutOfBoundsException {
+            checkNotBuilt();
+            Objects.checkIndex(index, tempo.length);
+            tempo[index] = (index == tempo.length - 1) ? word & lastWordMask(size) : word;
+            return this;
+        }
+
+        /**
+         * Does the logic and operation with the given BitVector, in place.
+         *
+         * @param that
+         *            , the other BitVector.
+         * @return this
+         * @throws IllegalArgumentException
+         *              if their sizes are different
+         * @throws NullPointerException
+         *              if parameter is null.
+         */
+        public Builder and(BitVector that) throws IllegalArgumentException, NullPointerException {
+            checkNotBuilt();
+            logicOperatorInto(tempo, size, that, logicOperation.AND, tempo);
+            return this;
+        }
+
+        /**
+         * Does the logic or operation with the given BitVector, in place.
+         *
+         * @param that
+         *            , the other BitVector.
+         * @return this
+         * @throws IllegalArgumentException
+         *              if their sizes are different
+         * @throws NullPointerException
+         *              if parameter is null.
+         */
+        public Builder or(BitVector that) throws IllegalArgumentException, NullPointerException {
+            checkNotBuilt();
+            logicOperatorInto(tempo, size, that, logicOperation.OR, tempo);
+            return this;
+        }
+
+        /**
+         * Complements the vector being built, in place.
+         *
+         * @return this
+         */
+        public Builder not() {
+            checkNotBuilt();
+            logicOperatorInto(tempo, size, null, logicOperation.NOT, tempo);
+            return this;
+        }
+
+        /**
+         * shifts the vector being built a given distance to the left if distance
+         * positive, else to the right, in place.
+         *
+         * @param distance
+         * @return this
+         */
+        public Builder shift(int distance) {
+            checkNotBuilt();
+            extractInto(tempo, size, tempo, size, -distance, extension.ZERO_EXTENSION);
+            return this;
+        }
+
         /**
          * Build the BitVector
          */
         public BitVector build() {
-            if(tempo==null) throw new IllegalStateException();
+            checkNotBuilt();
             try {
-            return new BitVector(tempo);
+            return new BitVector(tempo, size);
             }finally{
                 tempo = null;
             }
         }
+
+        private void checkNotBuilt() {
+            if(tempo==null) throw new IllegalStateException();
+        }
     }
     ///////////////////////////////////////////////End of Public interface/////////////////////////////////////////////////
- 
-     
-     
-     
-     
-     
-     
-     
-    private int[] vector;
-     
+
+
+
+
+
+
+
+
+    private static final WordOperations OPERATIONS = WordOperations.load();
+
+    private final long[] words;
+    private final int size;
+
     private enum extension {
         ZERO_EXTENSION, WRAPE_EXTENSION
     }
- 
+
     private enum logicOperation {
         NOT, OR, AND
     }
- 
-     
-     
-     
+
+
+    private BitVector(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+
     private BitVector logicOperator(BitVector that, logicOperation l)  {
+        long[] tempo = new long[words.length];
+        logicOperatorInto(words, size, that, l, tempo);
+        return new BitVector(tempo, size);
+    }
+
+
+    /*
+     * Applies the operation word by word, the result can be written in the
+     * operand itself.
+     */
+    private static void logicOperatorInto(long[] words, int size, BitVector that, logicOperation l, long[] result) {
         if (l != logicOperation.NOT  ) {
             Objects.requireNonNull(that);
-            Preconditions.checkArgument(that.size()== size());
+            Preconditions.checkArgument(that.size == size);
             }
-        int[] tempo = new int[tableSize()];
-        for (int i = 0; i < tableSize(); ++i)
+        for (int i = 0; i < words.length; ++i)
             switch (l) {
             case NOT:
-                tempo[i] = vector[i] ^ -1;
+                result[i] = ~words[i];
                 break;
             case OR:
-                tempo[i] = vector[i] | that.vector[i];
+                result[i] = words[i] | that.words[i];
                 break;
             case AND:
-                tempo[i] = vector[i] & that.vector[i];
+                result[i] = words[i] & that.words[i];
                 break;
             }
-        return new BitVector(tempo);
-    }
- 
-     
-    public BitVector(int[] vectorElements) {
-        vector = vectorElements;
-    }
- 
-     
-    private int tableSize() {
-        return vector.length;
-    }
- 
-     
-    private int indexTableau(int i) {
-        return Math.floorDiv(Math.floorMod(i, size()), Integer.SIZE);
- 
-    }
- 
-     
-    private int indexInt(int i) {
-        return Math.floorMod(i, Integer.SIZE);
-    }
- 
-     
-     
-     
+        if (l == logicOperation.NOT && words.length > 0)
+            result[words.length - 1] &= lastWordMask(size);
+    }
+
+
     private BitVector extract(int size, int startIndex, extension e) {
-        Preconditions.checkArgument(size%Integer.SIZE==0);
-    	int sizeTable =Math.floorDiv(size, Integer.SIZE);
-        int[] tempo = new int[sizeTable];
-        for (int i = 0; i < sizeTable; ++i)
-            tempo[i] = intExtentionCalculator(size - Integer.SIZE * i, startIndex + i * Integer.SIZE, e);
-        return new BitVector(tempo);
-    }
- 
-     
-     
-     
-     
-    private int intExtentionCalculator(int size, int startIndex, extension e) {
-        int result = 0;
-        for (int i = 0; i < Math.min(size, Integer.SIZE); ++i)
-            result = Bits.set(result, i, valueWithExtension(startIndex + i, e));
-        return result;
-    }
- 
-     
-     
-     
-     
-     
-    private boolean valueWithExtension(int index, extension e) {
-        if (index >= 0 && index < size())
-            return Bits.test(vector[indexTableau(index)], indexInt(index));
-        else {
+        Preconditions.checkArgument(size >= 0 && size%Integer.SIZE==0);
+        long[] tempo = new long[wordCount(size)];
+        extractInto(words, this.size, tempo, size, startIndex, e);
+        return new BitVector(tempo, size);
+    }
+
+
+    /*
+     * Extracts the bits of src starting at startIndex into dst, one 64 bits word
+     * at a time: each word of the result is a funnel shift of the (at most three)
+     * 32 bits chunks of src it overlaps. The words are written in an order that
+     * never overwrites a chunk that is still to be read, so src and dst can be
+     * the same array as long as they have the same size.
+     */
+    private static void extractInto(long[] src, int srcSize, long[] dst, int dstSize, int startIndex,
+            extension e) {
+        int count = wordCount(dstSize);
+        int firstChunk = Math.floorDiv(startIndex, Integer.SIZE);
+        int offset = Math.floorMod(startIndex, Integer.SIZE);
+        boolean ascending = startIndex >= 0;
+        for (int n = 0; n < count; ++n) {
+            int i = ascending ? n : count - 1 - n;
+            int c = firstChunk + 2 * i;
+            long word = Integer.toUnsignedLong(chunk(src, srcSize, c, e))
+                    | ((long) chunk(src, srcSize, c + 1, e) << Integer.SIZE);
+            if (offset != 0)
+                word = (word >>> offset) | ((long) chunk(src, srcSize, c + 2, e) << (Long.SIZE - offset));
+            dst[i] = word;
+        }
+        if (count > 0)
+            dst[count - 1] &= lastWordMask(dstSize);
+    }
+
+
+    /*
+     * returns the 32 bits chunk of the given index, extended outside of the
+     * vector with zeros or by wrapping.
+     */
+    private static int chunk(long[] words, int size, int index, extension e) {
+        int chunks = size / Integer.SIZE;
+        if (index < 0 || index >= chunks) {
             if (e == extension.ZERO_EXTENSION)
-                return false;
-            return Bits.test(vector[indexTableau(index)], indexInt(index));
+                return 0;
+            index = Math.floorMod(index, chunks);
         }
+        return (int) (words[index >>> 1] >>> ((index & 1) * Integer.SIZE));
+    }
+
+
+    private static int wordCount(int size) {
+        return (size + Long.SIZE - 1) / Long.SIZE;
+    }
+
+
+    private static long lastWordMask(int size) {
+        int used = size % Long.SIZE;
+        return (used == 0) ? -1L : (1L << used) - 1;
+    }
+
+
+    private static long[] wordsOf(int[] vectorElements) {
+        long[] words = new long[wordCount(vectorElements.length * Integer.SIZE)];
+        for (int i = 0; i < vectorElements.length; ++i)
+            words[i / 2] |= Integer.toUnsignedLong(vectorElements[i]) << ((i % 2) * Integer.SIZE);
+        return words;
     }
- 
-     
-     
-     
-     
-    private static int[] BitVectorUtile(int size, boolean initialValue) throws IllegalArgumentException {
+
+
+    private static long[] BitVectorUtile(int size, boolean initialValue) throws IllegalArgumentException {
         Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
-        int[] vectorElements = new int[Math.floorDiv(size, Integer.SIZE)];
-        if (initialValue)
-            for (int i = 0; i < Math.floorDiv(size, Integer.SIZE); ++i)
-                vectorElements[i] = -1;
+        long[] vectorElements = new long[wordCount(size)];
+        if (initialValue) {
+            Arrays.fill(vectorElements, -1L);
+            vectorElements[vectorElements.length - 1] &= lastWordMask(size);
+        }
         return vectorElements;
     }
- 
-   
-}
\ No newline at end of file
+
+
+}
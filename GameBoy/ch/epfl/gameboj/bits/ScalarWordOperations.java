@@ -0,0 +1,37 @@
+package ch.epfl.gameboj.bits;
+
+/**
+ * the word by word operations done one 64 bits word at a time.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class ScalarWordOperations implements WordOperations {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.bits.WordOperations#select(long[], long[], long[],
+	 * long[])
+	 */
+	@Override
+	public void select(long[] mask, long[] a, long[] b, long[] result) {
+		for (int i = 0; i < result.length; ++i)
+			result[i] = (a[i] & mask[i]) | (b[i] & ~mask[i]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.bits.WordOperations#lookup(long[], long[], long, long,
+	 * long, long, long[])
+	 */
+	@Override
+	public void lookup(long[] high, long[] low, long t0, long t1, long t2, long t3, long[] result) {
+		for (int i = 0; i < result.length; ++i) {
+			long h = high[i], l = low[i];
+			result[i] = (h & l & t3) | (h & ~l & t2) | (~h & l & t1) | (~h & ~l & t0);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package ch.epfl.gameboj.bits;
+
+/**
+ * the word by word operations combining the 64 bits words of bit vectors, done
+ * by scalar code or, when the incubating Vector API is available, by the vector
+ * instructions of the processor. The arrays given to an operation have the same
+ * length, and the result can be one of the operands.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+interface WordOperations {
+
+	/**
+	 * the name of the implementation using the Vector API, compiled apart as it
+	 * needs the jdk.incubator.vector module.
+	 */
+	String VECTOR_OPERATIONS = "ch.epfl.gameboj.bits.VectorWordOperations";
+
+	/**
+	 * the system property which, set to false, keeps the scalar implementation
+	 * even if the Vector API is available.
+	 */
+	String VECTOR_PROPERTY = "gameboj.vector";
+
+	/**
+	 * writes in the result the bits of a where the bits of the mask are 1 and
+	 * those of b elsewhere.
+	 *
+	 * @param mask
+	 * @param a
+	 * @param b
+	 * @param result
+	 */
+	void select(long[] mask, long[] a, long[] b, long[] result);
+
+	/**
+	 * writes in the result, for each bit, the bit of the same position of one of
+	 * the 4 given words: t3 if the bits of high and low are both 1, t2 if only
+	 * the one of high is, t1 if only the one of low is, t0 otherwise.
+	 *
+	 * @param high
+	 * @param low
+	 * @param t0
+	 * @param t1
+	 * @param t2
+	 * @param t3
+	 * @param result
+	 */
+	void lookup(long[] high, long[] low, long t0, long t1, long t2, long t3, long[] result);
+
+	/**
+	 * returns the implementation using the Vector API if it can be loaded and
+	 * isn't disabled by the system property, the scalar one otherwise.
+	 */
+	static WordOperations load() {
+		if (Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) {
+			try {
+				return (WordOperations) Class.forName(VECTOR_OPERATIONS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not compiled, or the module jdk.incubator.vector isn't there
+			}
+		}
+		return new ScalarWordOperations();
+	}
+
+}
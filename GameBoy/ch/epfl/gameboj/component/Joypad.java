@@ -1,6 +1,9 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
@@ -9,15 +12,36 @@ import ch.epfl.gameboj.component.cpu.Alu;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
-public final class Joypad implements Component {
+public final class Joypad implements Component, Stateful {
 	private Cpu cpu;
 	private int p1;
 	private int pressed;
+	// keys posted by other threads, as key index * 2 + 1 if pressed, * 2 if released
+	private final Queue<Integer> postedKeys = new ConcurrentLinkedQueue<>();
+	private KeyListener keyListener;
 
 	public enum Key {
 		RIGHT, LEFT, UP, DOWN, A, B, SELECT, START
 	}
 
+	private static final Key[] KEYS = Key.values();
+
+	/**
+	 * a listener of the keys pressed and released on a joypad, called by the
+	 * thread emulating the GameBoy when a key changes, before the cycle of the
+	 * GameBoy at which it changes.
+	 */
+	@FunctionalInterface
+	public interface KeyListener {
+		/**
+		 * @param key
+		 *            the key which changed.
+		 * @param pressed
+		 *            whether it is now pressed.
+		 */
+		void keyChanged(Key key, boolean pressed);
+	}
+
 	/**
 	 * constructs a Joypad.
 	 * 
@@ -60,11 +84,105 @@ public final class Joypad implements Component {
 	}
 
 	public void keyPressed(Key b) {
-		pressed = Bits.set(pressed, b.ordinal(), true);
+		setKey(b.ordinal(), true);
 	}
 
 	public void keyReleased(Key b) {
-		pressed = Bits.set(pressed, b.ordinal(), false);
+		setKey(b.ordinal(), false);
+	}
+
+	/**
+	 * sets the listener of the keys of this joypad, which is not copied by
+	 * {@link #copyFrom(Joypad)}.
+	 * 
+	 * @param keyListener
+	 *            the listener, or null for none.
+	 */
+	public void setKeyListener(KeyListener keyListener) {
+		this.keyListener = keyListener;
+	}
+
+	/**
+	 * posts the pressing of the given key. Can be called from any thread, the key
+	 * is pressed by the next call to {@link #applyPostedKeys()}.
+	 * 
+	 * @param b
+	 *            the key.
+	 */
+	public void postKeyPressed(Key b) {
+		postedKeys.add(b.ordinal() * 2 + 1);
+	}
+
+	/**
+	 * posts the release of the given key. Can be called from any thread, the key
+	 * is released by the next call to {@link #applyPostedKeys()}.
+	 * 
+	 * @param b
+	 *            the key.
+	 */
+	public void postKeyReleased(Key b) {
+		postedKeys.add(b.ordinal() * 2);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return 2;
+	}
+
+	/**
+	 * saves the register P1 and the keys pressed, but not the keys posted and not
+	 * applied yet.
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		buffer.put((byte) p1).put((byte) pressed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		p1 = Byte.toUnsignedInt(buffer.get());
+		pressed = Byte.toUnsignedInt(buffer.get());
+	}
+
+	/**
+	 * copies the register P1 and the keys pressed of the given joypad into this
+	 * one, but not its keys posted and not applied yet.
+	 * 
+	 * @param that
+	 */
+	public void copyFrom(Joypad that) {
+		p1 = that.p1;
+		pressed = that.pressed;
+	}
+
+	/**
+	 * presses and releases the posted keys, in the order they were posted. Must be
+	 * called by the thread emulating the GameBoy.
+	 */
+	public void applyPostedKeys() {
+		Integer k;
+		while ((k = postedKeys.poll()) != null)
+			setKey(k / 2, k % 2 == 1);
+	}
+
+	private void setKey(int index, boolean down) {
+		if (Bits.test(pressed, index) == down)
+			return;
+		pressed = Bits.set(pressed, index, down);
+		if (keyListener != null)
+			keyListener.keyChanged(KEYS[index], down);
 	}
 
 	
@@ -0,0 +1,41 @@
+package ch.epfl.gameboj.component;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represents a part of the GameBoy whose state can be saved into
+ * a buffer of bytes and restored from it.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public interface Stateful {
+
+	/**
+	 * @return the number of bytes of the state.
+	 */
+	int stateSize();
+
+	/**
+	 * Writes the state at the position of the buffer, which is advanced by
+	 * stateSize() bytes.
+	 * 
+	 * @param buffer
+	 * @throws BufferOverflowException
+	 *             if the buffer doesn't have enough remaining bytes.
+	 */
+	void saveState(ByteBuffer buffer) throws BufferOverflowException;
+
+	/**
+	 * Restores the state saved at the position of the buffer, which is advanced
+	 * by stateSize() bytes.
+	 * 
+	 * @param buffer
+	 * @throws BufferUnderflowException
+	 *             if the buffer doesn't have enough remaining bytes.
+	 */
+	void loadState(ByteBuffer buffer) throws BufferUnderflowException;
+
+}
@@ -1,5 +1,7 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
@@ -13,7 +15,7 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Stateful {
 
 	private Cpu cpu;
 	private int DIV, TIMA, TMA, TAC; // DIV is the Principal Counter
@@ -140,6 +142,52 @@ public final class Timer implements Component, Clocked {
 			return false;
 		}
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return Character.BYTES + 3;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		buffer.putChar((char) DIV).put((byte) TIMA).put((byte) TMA).put((byte) TAC);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		DIV = buffer.getChar();
+		TIMA = Byte.toUnsignedInt(buffer.get());
+		TMA = Byte.toUnsignedInt(buffer.get());
+		TAC = Byte.toUnsignedInt(buffer.get());
+	}
+
+	/**
+	 * copies the state of the given timer into this one.
+	 * 
+	 * @param that
+	 */
+	public void copyFrom(Timer that) {
+		DIV = that.DIV;
+		TIMA = that.TIMA;
+		TMA = that.TMA;
+		TAC = that.TAC;
+	}
+
      /**
       * If the state of this timer passes from true to false 
       * it increments the secondary counter by 1 . Until it reaches 
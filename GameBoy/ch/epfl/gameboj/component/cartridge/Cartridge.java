@@ -2,10 +2,13 @@ package ch.epfl.gameboj.component.cartridge;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.util.zip.CRC32;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
@@ -15,13 +18,15 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
-public final class Cartridge implements Component {
-	private Component romController;
+public final class Cartridge implements Component, Stateful {
+	private MemoryBankController romController;
+	private final long romCrc;
 	private static final int type = 0x147;
 	private static final int RAM_SIZE[] = new int[] { 0, 2048, 8192, 32768 };
 
-	private Cartridge(Component romController) {
+	private Cartridge(MemoryBankController romController, long romCrc) {
 		this.romController = romController;
+		this.romCrc = romCrc;
 	}
 
 	/**
@@ -29,20 +34,43 @@ public final class Cartridge implements Component {
 	 * 
 	 * @param romFile
 	 * @throws IllegalArgumentException
-	 *             if the file doesn't contain a zero at the position
+	 *             if the byte of the file at the cartridge type offset (0x147)
+	 *             isn't between 0 and 3 included, the types of cartridges
+	 *             without memory bank controller (0) or with a MBC1 (1 to 3).
 	 * @throws IOException
 	 *             in case of input/output problem, including if the fileName
 	 *             doesn't exist.
 	 */
 	public static Cartridge ofFile(File romFile) throws IOException  {
+		return ofBytes(Files.readAllBytes(romFile.toPath()));
+	}
 
-		byte[] data = Files.readAllBytes(romFile.toPath());
-	
+	/**
+	 * Constructs a Cartridge. It's Rom contains the given octets, which are
+	 * copied.
+	 * 
+	 * @param data
+	 *            the octets of a rom file.
+	 * @throws IllegalArgumentException
+	 *             if the byte of the data at the cartridge type offset (0x147)
+	 *             isn't between 0 and 3 included, the types of cartridges
+	 *             without memory bank controller (0) or with a MBC1 (1 to 3).
+	 */
+	public static Cartridge ofBytes(byte[] data) {
 		if (!(data[type] >= 0 && data[type] < 4))
 			throw new IllegalArgumentException();
 
+		CRC32 crc = new CRC32();
+		crc.update(data);
 		return new Cartridge((data[type] == 0) ? new MBC0(new Rom(data))
-				: new MBC1(new Rom(data), RAM_SIZE[data[0x149]]));
+				: new MBC1(new Rom(data), RAM_SIZE[data[0x149]]), crc.getValue());
+	}
+
+	/**
+	 * @return the CRC-32 of the octets of the Rom, which identifies it.
+	 */
+	public long romCrc() {
+		return romCrc;
 	}
 
 	/*
@@ -68,4 +96,61 @@ public final class Cartridge implements Component {
 		romController.write(address, data);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return romController.stateSize();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		romController.saveState(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		romController.loadState(buffer);
+	}
+
+	/**
+	 * Returns an independent cartridge in the same state as this one, sharing its
+	 * Rom and, copy-on-write, its Ram. Must be called by the thread using this
+	 * cartridge, the copy can then be used by another one.
+	 * 
+	 * @return the copy of this cartridge.
+	 */
+	public Cartridge fork() {
+		return new Cartridge(romController.fork(), romCrc);
+	}
+
+	/**
+	 * Copies the state of the given cartridge, with the same Rom, into this one,
+	 * as fork() would copy it in a new cartridge. Must be called by the thread
+	 * using the given cartridge.
+	 * 
+	 * @param that
+	 *            the cartridge to copy.
+	 * @throws IllegalArgumentException
+	 *             if the Rom of the given cartridge isn't the one of this
+	 *             cartridge.
+	 */
+	public void copyFrom(Cartridge that) throws IllegalArgumentException {
+		Preconditions.checkArgument(that.romCrc == romCrc);
+		romController.copyFrom(that.romController);
+	}
+
 }
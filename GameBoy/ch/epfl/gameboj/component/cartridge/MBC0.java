@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
@@ -15,7 +16,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
-public final class MBC0 implements Component {
+public final class MBC0 implements MemoryBankController {
 
 	private Rom rom;
     protected static final int sizeMemoryBankType0 = 32768;
@@ -64,6 +65,47 @@ public final class MBC0 implements Component {
 
 	}
 
+	/**
+	 * A ROM has no state to save, so this method returns 0.
+	 */
+	@Override
+	public int stateSize() {
+		return 0;
+	}
+
+	/**
+	 * A ROM has no state to save, so this method doesn't do anything.
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+
+	}
+
+	/**
+	 * A ROM has no state to restore, so this method doesn't do anything.
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+
+	}
+
+	/**
+	 * A ROM is never modified, so this method returns this controller itself.
+	 */
+	@Override
+	public MBC0 fork() {
+		return this;
+	}
+
+	/**
+	 * A ROM has no state to copy, so this method only checks the kind of the
+	 * given controller.
+	 */
+	@Override
+	public void copyFrom(MemoryBankController that) throws IllegalArgumentException {
+		Preconditions.checkArgument(that instanceof MBC0);
+	}
+
 	
 
 }
\ No newline at end of file
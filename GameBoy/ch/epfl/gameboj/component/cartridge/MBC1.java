@@ -1,14 +1,16 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements MemoryBankController {
     private static final int RAM_ENABLE = 0xA;
 
     private enum Mode { MODE_0, MODE_1 };
@@ -70,6 +72,44 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public int stateSize() {
+        return ram.stateSize() + 4;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        ram.saveState(buffer);
+        buffer.put((byte) (ramEnabled ? 1 : 0)).put((byte) mode.ordinal()).put((byte) romLsb5).put((byte) ramRom2);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ram.loadState(buffer);
+        ramEnabled = Byte.toUnsignedInt(buffer.get()) != 0;
+        mode = Mode.values()[Byte.toUnsignedInt(buffer.get()) & 1];
+        romLsb5 = Byte.toUnsignedInt(buffer.get());
+        ramRom2 = Byte.toUnsignedInt(buffer.get());
+    }
+
+    @Override
+    public MBC1 fork() {
+        MBC1 that = new MBC1(rom, ram.size());
+        that.copyFrom(this);
+        return that;
+    }
+
+    @Override
+    public void copyFrom(MemoryBankController controller) throws IllegalArgumentException {
+        checkArgument(controller instanceof MBC1);
+        MBC1 that = (MBC1) controller;
+        ram.copyFrom(that.ram);
+        ramEnabled = that.ramEnabled;
+        mode = that.mode;
+        romLsb5 = that.romLsb5;
+        ramRom2 = that.ramRom2;
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
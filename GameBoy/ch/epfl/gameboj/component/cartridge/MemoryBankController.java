@@ -0,0 +1,36 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
+
+/**
+ * This interface represents the controller of the memories of a cartridge.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+interface MemoryBankController extends Component, Stateful {
+
+	/**
+	 * Returns an independent controller with the same state, sharing the
+	 * read-only memory and, copy-on-write, the random access one. Must be called
+	 * by the thread using this controller.
+	 * 
+	 * @return the copy of this controller.
+	 */
+	MemoryBankController fork();
+
+	/**
+	 * Copies the state of the given controller, of the same kind and with the
+	 * same read-only memory, into this one, sharing copy-on-write the random
+	 * access one as fork() does. Must be called by the thread using the given
+	 * controller.
+	 * 
+	 * @param that
+	 *            the controller to copy.
+	 * @throws IllegalArgumentException
+	 *             if the given controller isn't of the same kind.
+	 */
+	void copyFrom(MemoryBankController that) throws IllegalArgumentException;
+
+}
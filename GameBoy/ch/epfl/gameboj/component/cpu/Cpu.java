@@ -1,5 +1,7 @@
 package ch.epfl.gameboj.component.cpu;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
@@ -9,6 +11,7 @@ import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
 import ch.epfl.gameboj.component.cpu.Opcode.Kind;
 import ch.epfl.gameboj.component.memory.Ram;
@@ -19,7 +22,7 @@ import ch.epfl.gameboj.component.memory.Ram;
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Stateful {
 
 	/// ***/// Public interface beginning ///***///
 
@@ -121,6 +124,64 @@ public final class Cpu implements Component, Clocked {
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return registerFile.stateSize() + Long.BYTES + 2 * Character.BYTES + 3 + highRam.stateSize();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		registerFile.saveState(buffer);
+		buffer.putLong(nextNonIdleCycle).putChar((char) PC).putChar((char) SP).put((byte) IE).put((byte) IF)
+				.put((byte) (IME ? 1 : 0));
+		highRam.saveState(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		registerFile.loadState(buffer);
+		nextNonIdleCycle = buffer.getLong();
+		PC = buffer.getChar();
+		SP = buffer.getChar();
+		IE = Byte.toUnsignedInt(buffer.get());
+		IF = Byte.toUnsignedInt(buffer.get());
+		IME = buffer.get() != 0;
+		highRam.loadState(buffer);
+	}
+
+	/**
+	 * copies the state of the given processor into this one, the high ram being
+	 * shared copy-on-write. Must be called by the thread using the given
+	 * processor.
+	 * 
+	 * @param that
+	 */
+	public void copyFrom(Cpu that) {
+		registerFile.copyFrom(that.registerFile);
+		nextNonIdleCycle = that.nextNonIdleCycle;
+		PC = that.PC;
+		SP = that.SP;
+		IE = that.IE;
+		IF = that.IF;
+		IME = that.IME;
+		highRam.copyFrom(that.highRam);
+	}
+
 	/// ***/// Public interface end ///***///
 
 	private enum Direction {
@@ -0,0 +1,76 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * everything needed to draw a frame after it has been emulated: the content of
+ * the video and OAM memories when the frame started, the writes done in them
+ * during the frame and the state of each drawn line.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class FrameLog {
+
+	final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+	final Ram oamRam = new Ram(AddressMap.OAM_RAM_SIZE);
+	final LineState[] lines = new LineState[LcdController.LCD_HEIGHT];
+	int lineCount;
+
+	// each write is packed as: number of lines drawn before it (8 bits), OAM flag
+	// (1 bit), address in the memory (13 bits) and value (8 bits).
+	private int[] writes = new int[1024];
+	private int writeCount;
+
+	FrameLog() {
+		for (int i = 0; i < lines.length; ++i)
+			lines[i] = new LineState();
+	}
+
+	/**
+	 * starts the log of a new frame from the given memories.
+	 */
+	void start(Ram videoRam, Ram oamRam) {
+		this.videoRam.copyFrom(videoRam);
+		this.oamRam.copyFrom(oamRam);
+		lineCount = 0;
+		writeCount = 0;
+	}
+
+	/**
+	 * returns the state of the next line to draw, to be filled by the caller.
+	 */
+	LineState nextLine() {
+		return lines[lineCount++];
+	}
+
+	/**
+	 * records a write in the video memory (if oam is false) or in the OAM
+	 * memory, at the given index of this memory.
+	 */
+	void logWrite(boolean oam, int index, int value) {
+		if (writeCount == writes.length)
+			writes = Arrays.copyOf(writes, 2 * writes.length);
+		writes[writeCount++] = lineCount << 22 | (oam ? 1 << 21 : 0) | index << 8 | value;
+	}
+
+	/**
+	 * applies to the given memories, which must contain the frame's initial
+	 * content, the writes done before the line of the given number was drawn,
+	 * starting from the write of the given index. Returns the index of the first
+	 * write not applied.
+	 */
+	int applyWrites(Ram videoRam, Ram oamRam, int lineNumber, int from) {
+		int i = from;
+		while (i < writeCount && writes[i] >>> 22 <= lineNumber) {
+			int w = writes[i++];
+			Ram ram = ((w >>> 21 & 1) == 1) ? oamRam : videoRam;
+			ram.write(w >>> 8 & 0x1FFF, w & 0xFF);
+		}
+		return i;
+	}
+
+}
@@ -1,9 +1,9 @@
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
@@ -11,18 +11,59 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
 import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
-import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 import ch.epfl.gameboj.component.memory.Ram;
 
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Stateful {
 
 	public final static int LCD_WIDTH = 160;
 	public final static int LCD_HEIGHT = 144;
+	public final static int CYCLES_PER_FRAME = 114 * (LCD_HEIGHT + 10);
+
+	/**
+	 * the ways the lines of the frames can be drawn:
+	 * <ul>
+	 * <li>IMMEDIATE: each line is drawn by the emulation, when the LCD reaches
+	 * it,</li>
+	 * <li>DEFERRED: the emulation only records the state of each line and the
+	 * writes in the video and OAM memories, the frame is then drawn in parallel
+	 * bands by other threads while the emulation of the next frame goes on.</li>
+	 * </ul>
+	 * Both give exactly the same images.
+	 */
+	public enum Rendering {
+		IMMEDIATE, DEFERRED
+	}
+
+	/**
+	 * which frames are drawn:
+	 * <ul>
+	 * <li>ALWAYS: all of them,</li>
+	 * <li>EVERY_NTH: one frame out of a given period,</li>
+	 * <li>ON_DEMAND: the frame following each call to {@link #currentImage()},
+	 * </li>
+	 * <li>NEVER: none of them.</li>
+	 * </ul>
+	 * The frames which are not drawn are skipped: the current image stays the last
+	 * drawn frame. The timing of the LCD (LY, STAT and the interruptions) doesn't
+	 * depend on the policy.
+	 * <p>
+	 * A drawn frame only draws its lines again over the previous image, the other
+	 * ones keeping their content, and the line 0 is only drawn by the first frame
+	 * after the LCD is turned on. So the images following skipped frames are not
+	 * reproducible: they can differ from the ones drawn with ALWAYS, at least on
+	 * the line 0, and depend on which frames were drawn before. Only the state of
+	 * the emulation, as given by {@link ch.epfl.gameboj.GameBoy#stateDigest()}, is the same
+	 * whatever the policy.
+	 */
+	public enum RenderPolicy {
+		ALWAYS, EVERY_NTH, ON_DEMAND, NEVER
+	}
 
 	/**
 	 * constructs a LcdController
@@ -40,8 +81,10 @@ public final class LcdController implements Component, Clocked {
 		nextNonIdleCycle = 0;
 		VIDEO_RAM = new Ram(AddressMap.VIDEO_RAM_SIZE);
 		OAM_RAM = new Ram(AddressMap.OAM_RAM_SIZE);
-		startCopying = false;
-		zeroBitVector = new BitVector(LCD_WIDTH);
+		renderer = new LineRenderer(VIDEO_RAM, OAM_RAM);
+		currentImage = new LcdImage(LCD_WIDTH, LCD_HEIGHT);
+		nextImage = new LcdImage(LCD_WIDTH, LCD_HEIGHT);
+		decodePalettes();
 	}
 
 	/*
@@ -51,23 +94,12 @@ public final class LcdController implements Component, Clocked {
 	 */
 	@Override
 	public void cycle(long cycle) {
-		if (counter == AddressMap.OAM_RAM_SIZE) {
-			startCopying = false;
-			counter = 0;
-		}
-		if (startCopying) {
-			int address = Bits.make16(registerFile.get(register.DMA), counter);
-			OAM_RAM.write(counter, bus.read(address));
-			++counter;
-		}
-
 		if (nextNonIdleCycle == Long.MAX_VALUE && registerFile.testBit(register.LCDC, LCDC.LCD_STATUS)) {
 			lcdOnCycle = cycle;
 			nextNonIdleCycle = cycle;
 
 		}
 
-		WX_7 = registerFile.get(register.WX) - 7;
 		currentCycle = cycle;
 		if (cycle == nextNonIdleCycle)
 			reallyCycle();
@@ -133,9 +165,19 @@ public final class LcdController implements Component, Clocked {
 			}
 				break;
 			case DMA: {
-				counter = 0;
 				registerFile.set(reg, data);
-				startCopying = true;
+				// the whole transfer is done at once, the OAM stays busy for the 160
+				// cycles it takes on the Game Boy
+				for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+					writeOam(i, bus.read(Bits.make16(data, i)));
+				dmaEndCycle = currentCycle + 1 + AddressMap.OAM_RAM_SIZE;
+			}
+				break;
+			case BGP:
+			case OBP0:
+			case OBP1: {
+				registerFile.set(reg, data);
+				decodePalettes();
 			}
 				break;
 			default: {
@@ -144,11 +186,14 @@ public final class LcdController implements Component, Clocked {
 				break;
 			}
 		}
-		if (address >= AddressMap.OAM_START && address < AddressMap.OAM_END)
-			OAM_RAM.write(address - AddressMap.OAM_START, data);
+		if (address >= AddressMap.OAM_START && address < AddressMap.OAM_END && currentCycle >= dmaEndCycle)
+			writeOam(address - AddressMap.OAM_START, data);
 
-		if (address >= AddressMap.VIDEO_RAM_START && address < AddressMap.VIDEO_RAM_END)
+		if (address >= AddressMap.VIDEO_RAM_START && address < AddressMap.VIDEO_RAM_END) {
 			VIDEO_RAM.write(address - AddressMap.VIDEO_RAM_START, data);
+			if (logging())
+				frameLog.logWrite(false, address - AddressMap.VIDEO_RAM_START, data);
+		}
 
 	}
 
@@ -163,20 +208,95 @@ public final class LcdController implements Component, Clocked {
 		bus.attach(this);
 	}
 
-	/*
-	 * gets the image currently displayed or a blank image.
+	/**
+	 * gets the image currently displayed or a blank image. The controller draws
+	 * into two frame buffers that are swapped at each VBLANK, and the returned
+	 * image is a read-only view of the displayed one: it stays unchanged until
+	 * the second VBLANK following this call, when it is drawn over again. With
+	 * the deferred rendering, waits for the last emulated frame to be drawn.
 	 */
 	public LcdImage currentImage() {
-		List<LcdImageLine> lines = new ArrayList<>();
-		BitVector zeroLine = new BitVector(LCD_WIDTH);
-		for (int i = 0; i < LCD_HEIGHT; ++i)
-			lines.add(new LcdImageLine(zeroLine, zeroLine, zeroLine));
-		return (currentImage == null) ? new LcdImage(LCD_WIDTH, LCD_HEIGHT, lines) : currentImage;
+		imageRequested = true;
+		awaitRendering();
+		return currentImage;
+	}
+
+	/**
+	 * chooses how the lines of the frames are drawn, the change taking effect at
+	 * the beginning of the next frame.
+	 * 
+	 * @param rendering
+	 * @throws NullPointerException
+	 *             if rendering is null.
+	 */
+	public void setRendering(Rendering rendering) throws NullPointerException {
+		requestedRendering = Objects.requireNonNull(rendering);
+	}
+
+	/**
+	 * chooses which frames are drawn, the change taking effect at the beginning of
+	 * the next frame.
+	 * 
+	 * @param policy
+	 *            the policy, which mustn't be EVERY_NTH.
+	 * @throws NullPointerException
+	 *             if policy is null.
+	 * @throws IllegalArgumentException
+	 *             if policy is EVERY_NTH, which needs a period.
+	 */
+	public void setRenderPolicy(RenderPolicy policy) throws NullPointerException, IllegalArgumentException {
+		Preconditions.checkArgument(Objects.requireNonNull(policy) != RenderPolicy.EVERY_NTH);
+		setRenderPolicy(policy, 1);
+	}
+
+	/**
+	 * chooses which frames are drawn, the change taking effect at the beginning of
+	 * the next frame.
+	 * 
+	 * @param policy
+	 * @param period
+	 *            the number of frames between two drawn ones for EVERY_NTH,
+	 *            ignored by the other policies.
+	 * @throws NullPointerException
+	 *             if policy is null.
+	 * @throws IllegalArgumentException
+	 *             if period isn't strictly positive.
+	 */
+	public void setRenderPolicy(RenderPolicy policy, int period)
+			throws NullPointerException, IllegalArgumentException {
+		Objects.requireNonNull(policy);
+		Preconditions.checkArgument(period > 0);
+		renderPeriod = period;
+		renderPolicy = policy;
+	}
+
+	/**
+	 * @return the number of frames emulated since the creation of this, drawn or
+	 *         not.
+	 */
+	public long frames() {
+		return frames;
+	}
+
+	/**
+	 * @return the number of frames which were not drawn because of the render
+	 *         policy.
+	 */
+	public long skippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * @return the number of the frame shown by {@link #currentImage()}, the first
+	 *         frame being the frame 1, or 0 if no frame was drawn yet.
+	 */
+	public long currentImageFrame() {
+		return currentImageFrame;
 	}
 
 	/////////////////// End of Public Interface//////////////////
 
-	private enum LCDC implements Bit {
+	enum LCDC implements Bit {
 		BG, OBJ, OBJ_SIZE, BG_AREA, TILE_SOURCE, WIN, WIN_AREA, LCD_STATUS
 	}
 
@@ -184,10 +304,6 @@ public final class LcdController implements Component, Clocked {
 		LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
 	}
 
-	private enum SPRITE implements Bit {
-		notUsed0, notUsed1, notUsed2, notUsed3, PALETTE, FLIP_H, FLIP_V, BEHIND_BG
-	}
-
 	private enum STAT implements Bit {
 		MODE0, MODE1, LYC_EQ_LY, INT_MODE0, INT_MODE1, INT_MODE2, INT_LYC
 	}
@@ -196,29 +312,153 @@ public final class LcdController implements Component, Clocked {
 		ZERO, ONE, TWO, THREE
 	}
 
-	private enum plan {
-		FRONT, BACK
-	}
-
-	private enum image {
-		BACKGROUND, WINDOW
-	}
-
-	private final int BACKGROUND_SIZE = 256;
+	private static final int RENDER_BANDS = 4;
 	private RegisterFile<register> registerFile;
-	private int winY, counter, WX_7;
+	private int winY;
 	private Ram VIDEO_RAM, OAM_RAM;
 	private Cpu cpu;
-	private boolean startCopying;
 	private Bus bus;
-	private BitVector zeroBitVector;
-	private LcdImage.Builder nextImageBuilder;
-	private LcdImage currentImage;
-	private long nextNonIdleCycle, lcdOnCycle, currentCycle;
+	private LineRenderer renderer;
+	private LineState lineState = new LineState();
+	private LcdImage currentImage, nextImage;
+	private long nextNonIdleCycle, lcdOnCycle, currentCycle, dmaEndCycle;
+
+	private Rendering rendering = Rendering.IMMEDIATE;
+	private volatile Rendering requestedRendering = Rendering.IMMEDIATE;
+	private FrameLog frameLog, renderedLog;
+	private LineRenderer[] bandRenderers;
+	private Ram[] bandVideoRams, bandOamRams;
+	private CompletableFuture<Void> pendingRender;
+
+	private volatile RenderPolicy renderPolicy = RenderPolicy.ALWAYS;
+	private volatile int renderPeriod = 1;
+	private volatile boolean imageRequested;
+	private boolean drawing;
+	private long frames, skippedFrames, currentImageFrame;
+	// the palettes of the registers, decoded when they are written
+	private long[] bgpPlanes, obp0Planes, obp1Planes;
 
-	private final int TILE_SIZE = 8;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return registerFile.stateSize() + VIDEO_RAM.stateSize() + OAM_RAM.stateSize() + 2 + 7 * Long.BYTES
+				+ currentImage.stateSize() + nextImage.stateSize();
+	}
+
+	/**
+	 * returns the number of bytes at the end of the state which only depend on
+	 * the way the frames are drawn: whether the current frame is drawn, the
+	 * number of frames skipped and the images. Two controllers emulated
+	 * identically but drawing different frames only differ by these bytes.
+	 * 
+	 * @return the size of the output part of the state.
+	 */
+	public int outputStateSize() {
+		return 1 + 2 * Long.BYTES + currentImage.stateSize() + nextImage.stateSize();
+	}
 
-	int octetsPerTile = TILE_SIZE * 2;
+	/**
+	 * returns a 64 bits digest of the output of the controller: the image
+	 * displayed, the lines of the frame being emulated already drawn and whether
+	 * the rest of it is drawn. Two controllers in the same state but for their
+	 * output, with the same digest, draw the same images from there whatever they
+	 * drew before. With the deferred rendering, these lines are first drawn.
+	 * 
+	 * @return the digest of the output.
+	 */
+	public long outputDigest() {
+		awaitRendering();
+		if (logging())
+			drawLogged(frameLog, 0, 0, frameLog.lineCount);
+		return nextImage.digest(currentImage.digest(drawing ? 1 : 0));
+	}
+
+	/**
+	 * saves the state of the controller, including the image displayed and the
+	 * lines of the frame being emulated already drawn, but not the way the frames
+	 * are drawn. With the deferred rendering, these lines are first drawn.
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		awaitRendering();
+		if (logging())
+			drawLogged(frameLog, 0, 0, frameLog.lineCount);
+		registerFile.saveState(buffer);
+		VIDEO_RAM.saveState(buffer);
+		OAM_RAM.saveState(buffer);
+		buffer.put((byte) winY);
+		buffer.putLong(nextNonIdleCycle).putLong(lcdOnCycle).putLong(currentCycle).putLong(dmaEndCycle);
+		buffer.putLong(frames);
+		// the output, see outputStateSize()
+		buffer.put((byte) (drawing ? 1 : 0)).putLong(skippedFrames).putLong(currentImageFrame);
+		currentImage.saveState(buffer);
+		nextImage.saveState(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		awaitRendering();
+		registerFile.loadState(buffer);
+		decodePalettes();
+		VIDEO_RAM.loadState(buffer);
+		OAM_RAM.loadState(buffer);
+		winY = Byte.toUnsignedInt(buffer.get());
+		nextNonIdleCycle = buffer.getLong();
+		lcdOnCycle = buffer.getLong();
+		currentCycle = buffer.getLong();
+		dmaEndCycle = buffer.getLong();
+		frames = buffer.getLong();
+		drawing = buffer.get() != 0;
+		skippedFrames = buffer.getLong();
+		currentImageFrame = buffer.getLong();
+		currentImage.loadState(buffer);
+		nextImage.loadState(buffer);
+		// the lines already drawn are in the next image, the others are logged
+		if (logging())
+			startFrameLog();
+	}
+
+	/**
+	 * copies the state of the given controller into this one, as saveState and
+	 * loadState would, but sharing the video and object memories copy-on-write.
+	 * Must be called by the thread using the given controller.
+	 * 
+	 * @param that
+	 */
+	public void copyFrom(LcdController that) {
+		awaitRendering();
+		that.awaitRendering();
+		if (that.logging())
+			that.drawLogged(that.frameLog, 0, 0, that.frameLog.lineCount);
+		registerFile.copyFrom(that.registerFile);
+		decodePalettes();
+		VIDEO_RAM.copyFrom(that.VIDEO_RAM);
+		OAM_RAM.copyFrom(that.OAM_RAM);
+		winY = that.winY;
+		drawing = that.drawing;
+		nextNonIdleCycle = that.nextNonIdleCycle;
+		lcdOnCycle = that.lcdOnCycle;
+		currentCycle = that.currentCycle;
+		dmaEndCycle = that.dmaEndCycle;
+		frames = that.frames;
+		skippedFrames = that.skippedFrames;
+		currentImageFrame = that.currentImageFrame;
+		currentImage.copyFrom(that.currentImage);
+		nextImage.copyFrom(that.nextImage);
+		if (logging())
+			startFrameLog();
+	}
 
 	private void reallyCycle() {
 
@@ -232,7 +472,9 @@ public final class LcdController implements Component, Clocked {
 		if (currentCycle == lcdOnCycle) {
 			setMode(mode.TWO);
 			winY = 0;
-			nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+			awaitRendering();
+			nextImage.clear();
+			startFrame();
 		}
 		switch (getMode()) {
 		case ZERO: {
@@ -240,7 +482,8 @@ public final class LcdController implements Component, Clocked {
 				setMode(mode.TWO);
 			} else {
 				setMode(mode.ONE);
-				currentImage = nextImageBuilder.build();
+				endFrame();
+				startFrame();
 				cpu.requestInterrupt(Interrupt.VBLANK);
 			}
 			nextNonIdleCycle += cyclesMode0;
@@ -274,7 +517,7 @@ public final class LcdController implements Component, Clocked {
 			break;
 		case THREE: {
 			this.nextNonIdleCycle += cyclesMode3;
-			nextImageBuilder.setLine(registerFile.get(register.LY), computeLine(LY));
+			drawLine(LY);
 			setMode(mode.ZERO);
 
 		}
@@ -302,6 +545,12 @@ public final class LcdController implements Component, Clocked {
 
 	}
 
+	private void decodePalettes() {
+		bgpPlanes = LcdImageLine.palettePlanes(registerFile.get(register.BGP));
+		obp0Planes = LcdImageLine.palettePlanes(registerFile.get(register.OBP0));
+		obp1Planes = LcdImageLine.palettePlanes(registerFile.get(register.OBP1));
+	}
+
 	private mode getMode() {
 
 		Boolean mode0 = registerFile.testBit(register.STAT, STAT.MODE0);
@@ -310,133 +559,169 @@ public final class LcdController implements Component, Clocked {
 		return mode.values()[(mode1 ? (1 << 1) : 0) + (mode0 ? 1 : 0)];
 	}
 
-	private LcdImageLine computeLine(int lineIndex) { // finish
-
-		Boolean windowON = registerFile.testBit(register.LCDC, LCDC.WIN) && WX_7 < LCD_WIDTH && WX_7 >= 0;
-		Boolean spriteON = registerFile.testBit(register.LCDC, LCDC.OBJ);
-		Boolean backGroundOn = registerFile.testBit(register.LCDC, LCDC.BG);
-
-		LcdImageLine backGroundLine = (backGroundOn) ? backGroundLine(lineIndex)
-				: new LcdImageLine(zeroBitVector, zeroBitVector, zeroBitVector);
-
-		LcdImageLine backGroundAndWindowLine = (lineIndex < registerFile.get(register.WY) || !windowON) ? backGroundLine
-				: backGroundLine.join(windowLine(), WX_7);
-
-		if (spriteON) {
-			BitVector opacity = backGroundAndWindowLine.opacity().or(spritesLine(lineIndex, plan.BACK).opacity().not());
-
-			return spritesLine(lineIndex, plan.BACK).below(backGroundAndWindowLine, opacity)
-					.below(spritesLine(lineIndex, plan.FRONT));
-		} else
-			return backGroundAndWindowLine;
-
+	/*
+	 * draws the given line, or records its state with the deferred rendering.
+	 */
+	private void drawLine(int ly) {
+		LineState s = (drawing && rendering == Rendering.DEFERRED) ? frameLog.nextLine() : lineState;
+		s.ly = ly;
+		s.lcdc = registerFile.get(register.LCDC);
+		s.scy = registerFile.get(register.SCY);
+		s.scx = registerFile.get(register.SCX);
+		s.bgp = bgpPlanes;
+		s.obp0 = obp0Planes;
+		s.obp1 = obp1Planes;
+		s.wy = registerFile.get(register.WY);
+		s.wx = registerFile.get(register.WX);
+		s.winY = winY;
+		if (drawing && rendering == Rendering.IMMEDIATE)
+			nextImage.setLine(ly, renderer.computeLine(s));
+		if (LineRenderer.windowDrawn(s))
+			++winY;
 	}
 
-	private LcdImageLine backGroundLine(int lineIndex) { // finish
-
-		return line(lineIndex, image.BACKGROUND).build().extractWrapped(LCD_WIDTH, registerFile.get(register.SCX))
-				.mapColors(registerFile.get(register.BGP));
-
+	private void writeOam(int index, int data) {
+		OAM_RAM.write(index, data);
+		if (logging())
+			frameLog.logWrite(true, index, data);
 	}
 
-	private LcdImageLine windowLine() { // finish
-
-		return line(winY, image.WINDOW).build().extractWrapped(LCD_WIDTH, 0).shift(WX_7)
-				.mapColors(registerFile.get(register.BGP));
+	private boolean logging() {
+		return drawing && rendering == Rendering.DEFERRED && nextNonIdleCycle != Long.MAX_VALUE;
 	}
 
-	private LcdImageLine.Builder line(int y, image pt) { /////////////////////////////////// still
-		LcdImageLine.Builder builder = new LcdImageLine.Builder(BACKGROUND_SIZE);
-		int tilesPerLine = 32;
-		int yInsideImage = (pt == image.WINDOW) ? winY : (y + registerFile.get(register.SCY)) % BACKGROUND_SIZE;
-
-		for (int x = 0; x < tilesPerLine; x++) {
-
-			int tileIndex = read((yInsideImage / TILE_SIZE) * tilesPerLine + x + AddressMap.BG_DISPLAY_DATA[registerFile
-					.testBit(register.LCDC, (pt == image.BACKGROUND) ? LCDC.BG_AREA : LCDC.WIN_AREA) ? 1 : 0]);
-			
-			int lsbAddressOfLine = tileBeginningAddress(tileIndex) + 2 * (yInsideImage % TILE_SIZE);
-			int msbAddressOfLine = lsbAddressOfLine + 1;
-			builder.setBytes(x, read(msbAddressOfLine), read(lsbAddressOfLine));
+	/*
+	 * starts a new frame, using the rendering requested, and decides if it is
+	 * drawn.
+	 */
+	private void startFrame() {
+		if (requestedRendering != rendering) {
+			awaitRendering();
+			rendering = requestedRendering;
 		}
-		if (pt == image.WINDOW)
-			++winY;
-		return builder;
-	}
-
-	private int tileBeginningAddress(int tileIndex) {
-		int tileBeginningAddress;
-		if (registerFile.testBit(register.LCDC, LCDC.TILE_SOURCE))
-			tileBeginningAddress = AddressMap.TILE_SOURCE[1] + tileIndex * octetsPerTile;
-		else
-			tileBeginningAddress = (tileIndex >= 0x80) ? AddressMap.TILE_SOURCE[0] + (tileIndex - 0x80) * octetsPerTile
-					: 0x9000 + tileIndex * octetsPerTile;
-		return tileBeginningAddress;
+		switch (renderPolicy) {
+		case ALWAYS:
+			drawing = true;
+			break;
+		case EVERY_NTH:
+			drawing = frames % renderPeriod == 0;
+			break;
+		case ON_DEMAND:
+			drawing = imageRequested;
+			imageRequested = false;
+			break;
+		case NEVER:
+			drawing = false;
+			break;
+		}
+		if (drawing && rendering == Rendering.DEFERRED)
+			startFrameLog();
 	}
 
-	private int[] spritesIntersectingLine(int line) { // finish
-		int maxSpritesPerLine = 10;
-		int maxSpritesInGameBoy = 40;
-		int counter = 0;
-		int spriteHeight = (registerFile.testBit(register.LCDC, LCDC.OBJ_SIZE) ? 16 : 8);
-
-		int xCoordinateAndIndex[] = new int[maxSpritesPerLine];
-
-		for (int i = 0; i < maxSpritesInGameBoy; i++) {
-			int firstYcoordinateOfSprite = OAM_RAM.read(4 * i) - 16;
-
-			Boolean lineIntersectSprite = line >= firstYcoordinateOfSprite
-					&& line < firstYcoordinateOfSprite + spriteHeight;
-
-			if (lineIntersectSprite && counter < maxSpritesPerLine) {
-				xCoordinateAndIndex[counter] = Bits.make16(OAM_RAM.read(4 * i + 1), i);
-				++counter;
+	/*
+	 * starts logging the lines of the frame from the current memories.
+	 */
+	private void startFrameLog() {
+		if (frameLog == null) {
+			frameLog = new FrameLog();
+			renderedLog = new FrameLog();
+			bandRenderers = new LineRenderer[RENDER_BANDS];
+			bandVideoRams = new Ram[RENDER_BANDS];
+			bandOamRams = new Ram[RENDER_BANDS];
+			for (int b = 0; b < RENDER_BANDS; ++b) {
+				bandVideoRams[b] = new Ram(AddressMap.VIDEO_RAM_SIZE);
+				bandOamRams[b] = new Ram(AddressMap.OAM_RAM_SIZE);
+				bandRenderers[b] = new LineRenderer(bandVideoRams[b], bandOamRams[b]);
 			}
 		}
-
-		int index[] = new int[counter];
-
-		Arrays.sort(xCoordinateAndIndex, 0, counter);
-
-		for (int i = 0; i < counter; i++)
-			index[i] = Bits.clip(8, xCoordinateAndIndex[i]);
-		return index;
+		frameLog.start(VIDEO_RAM, OAM_RAM);
 	}
 
-	private LcdImageLine oneSpriteLine(int indexOfSprite, int lineIndex) {
-
-		boolean flipH = Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.FLIP_H);
-		boolean flipV = Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.FLIP_V);
-
-		int sizeSprite = (registerFile.testBit(register.LCDC, LCDC.OBJ_SIZE) ? 16 : 8);
-		int firstYcoordinateOfSprite = OAM_RAM.read(4 * indexOfSprite) - 16;
-		int firstXcoordinateofSprite = OAM_RAM.read(4 * indexOfSprite + 1) - 8;
-		int palette = registerFile
-				.get(Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.PALETTE) ? register.OBP1 : register.OBP0);
-		int lineInsideSprite = (flipV) ? (sizeSprite - 1) - (lineIndex - firstYcoordinateOfSprite)
-				: lineIndex - firstYcoordinateOfSprite;
-		int tileIndex = OAM_RAM.read(4 * indexOfSprite + 2);
-		int msb = VIDEO_RAM.read(octetsPerTile * tileIndex + 2 * (lineInsideSprite % octetsPerTile) + 1);
-		int lsb = VIDEO_RAM.read(octetsPerTile * tileIndex + 2 * (lineInsideSprite % octetsPerTile));
-
-		LcdImageLine.Builder builder = new LcdImageLine.Builder(LCD_WIDTH);
-		builder.setBytes(0, flipH ? Bits.reverse8(msb) : msb, flipH ? Bits.reverse8(lsb) : lsb);
+	/*
+	 * displays the frame just emulated, or starts drawing it with the deferred
+	 * rendering.
+	 */
+	private void endFrame() {
+		++frames;
+		if (!drawing) {
+			++skippedFrames;
+			return;
+		}
+		currentImageFrame = frames;
+		if (rendering == Rendering.DEFERRED) {
+			awaitRendering();
+			FrameLog log = frameLog;
+			frameLog = renderedLog;
+			renderedLog = log;
+			pendingRender = CompletableFuture.runAsync(() -> render(log));
+		} else {
+			swapImages();
+		}
+	}
 
-		return builder.build().shift(firstXcoordinateofSprite).mapColors(palette);
+	private void swapImages() {
+		LcdImage displayedImage = currentImage;
+		currentImage = nextImage;
+		nextImage = displayedImage;
+		nextImage.copyFrom(currentImage); // lines not drawn again keep their content
+	}
 
+	/*
+	 * draws the frame of the given log in the next image, in parallel bands of
+	 * lines, and then displays it. Runs on another thread than the emulation,
+	 * which doesn't touch the images until awaitRendering() returned.
+	 */
+	private void render(FrameLog log) {
+		int bandSize = (log.lineCount + RENDER_BANDS - 1) / RENDER_BANDS;
+		// the memories of the log are copied by this thread only, as copying a
+		// Ram changes the one copied
+		for (int b = 0; b * bandSize < log.lineCount; ++b)
+			copyLoggedMemories(log, b);
+		IntStream.range(0, RENDER_BANDS).parallel()
+				.forEach(b -> drawBand(log, b, b * bandSize, Math.min(log.lineCount, (b + 1) * bandSize)));
+		swapImages();
 	}
 
-	private LcdImageLine spritesLine(int line, plan planType) {
-		LcdImageLine spritesLine = new LcdImageLine(zeroBitVector, zeroBitVector, zeroBitVector);
+	/*
+	 * draws the lines of the given log from the line from (included) to the line
+	 * to (excluded) in the next image, using the memories of the given band.
+	 */
+	private void drawLogged(FrameLog log, int band, int from, int to) {
+		if (from >= to)
+			return;
+		copyLoggedMemories(log, band);
+		drawBand(log, band, from, to);
+	}
 
-		for (int indexSprite : spritesIntersectingLine(line)) {
-			boolean BehindBackGround = Bits.test(OAM_RAM.read(indexSprite * 4 + 3), SPRITE.BEHIND_BG);
+	/*
+	 * puts the memories of the given band in the state of the start of the
+	 * frame of the given log.
+	 */
+	private void copyLoggedMemories(FrameLog log, int band) {
+		bandVideoRams[band].copyFrom(log.videoRam);
+		bandOamRams[band].copyFrom(log.oamRam);
+	}
 
-			if (planType == plan.BACK && BehindBackGround || planType == plan.FRONT && !BehindBackGround)
-				spritesLine = spritesLine.below(oneSpriteLine(indexSprite, line));
+	/*
+	 * does the same as drawLogged, the memories of the band being already copied
+	 * from the log.
+	 */
+	private void drawBand(FrameLog log, int band, int from, int to) {
+		if (from >= to)
+			return;
+		Ram videoRam = bandVideoRams[band], oamRam = bandOamRams[band];
+		int write = 0;
+		for (int i = from; i < to; ++i) {
+			write = log.applyWrites(videoRam, oamRam, i, write);
+			nextImage.setLine(log.lines[i].ly, bandRenderers[band].computeLine(log.lines[i]));
+		}
+	}
 
+	private void awaitRendering() {
+		if (pendingRender != null) {
+			pendingRender.join();
+			pendingRender = null;
 		}
-		return spritesLine;
 	}
 
 }
@@ -1,12 +1,11 @@
 package ch.epfl.gameboj.component.lcd;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.bits.Bits;
 
 /**
  * a Game Boy image.
@@ -16,8 +15,11 @@ import ch.epfl.gameboj.bits.Bits;
  */
 public final class LcdImage {
 
-	private final List<LcdImageLine> lines;
-	private final int height, width;
+	// the colors of copyArgb(int[]), shared by the front end and the headless
+	// exports
+	private static final int[] GRAY_COLORS = { 0xFF_FF_FF_FF, 0xFF_D3_D3_D3, 0xFF_A9_A9_A9, 0xFF_00_00_00 };
+	private final long[] msb, lsb;
+	private final int height, width, wordsPerLine;
 
 	/**
 	 * constructs an image of Game Boy.
@@ -27,13 +29,29 @@ public final class LcdImage {
 	 * @param height
 	 *            of the Image.
 	 * @param lines
-	 *            of pixels of the image.
+	 *            of pixels of the image, a missing (null) line being blank.
+	 * @throws IllegalArgumentException
+	 *             if the sizes aren't correct or if the lines don't match them.
 	 */
 	public LcdImage(int width, int height, List<LcdImageLine> lines) {
+		this(width, height);
+		Preconditions.checkArgument(lines.size() == height);
+		for (int y = 0; y < height; ++y)
+			if (lines.get(y) != null)
+				setLine(y, lines.get(y));
+	}
+
+	/*
+	 * constructs a blank image whose pixels are stored packed, line after line,
+	 * in two bit planes. Used by the LcdController as a reusable frame buffer.
+	 */
+	LcdImage(int width, int height) {
 		Preconditions.checkArgument(width > 0 && height > 0 && width % 32 == 0);
-		this.lines = Collections.unmodifiableList(new ArrayList<LcdImageLine>(lines));
 		this.width = width;
 		this.height = height;
+		this.wordsPerLine = (width + Long.SIZE - 1) / Long.SIZE;
+		this.msb = new long[wordsPerLine * height];
+		this.lsb = new long[wordsPerLine * height];
 	}
 
 	/**
@@ -60,8 +78,70 @@ public final class LcdImage {
 	 * @return integer between 0 and 3
 	 */
 	public int get(int x, int y) {
+		Objects.checkIndex(y, height);
+		Preconditions.checkArgument(x >= 0 && x < width);
+		int i = y * wordsPerLine + x / Long.SIZE;
+		return (int) (((msb[i] >>> x) & 1L) << 1 | ((lsb[i] >>> x) & 1L));
+	}
+
+	/**
+	 * copies the colors of all the pixels of this, line after line, into the given
+	 * array, each color being an integer between 0 and 3.
+	 * 
+	 * @param colors
+	 *            the array to fill, of at least width * height elements.
+	 * @throws IllegalArgumentException
+	 *             if the array is too small.
+	 */
+	public void copyColors(byte[] colors) throws IllegalArgumentException {
+		Preconditions.checkArgument(colors.length >= width * height);
+		int p = 0;
+		for (int i = 0; i < msb.length; ++i) {
+			long m = msb[i], l = lsb[i];
+			for (int x = 0; x < pixelsInWord(i); ++x) {
+				colors[p++] = (byte) ((int) (m & 1L) << 1 | (int) (l & 1L));
+				m >>>= 1;
+				l >>>= 1;
+			}
+		}
+	}
+
+	/**
+	 * copies the ARGB colors of all the pixels of this, line after line, into the
+	 * given array, the 4 colors being the shades of gray, from white to black, in
+	 * which the images are displayed and exported.
+	 * 
+	 * @param argb
+	 *            the array to fill, of at least width * height elements.
+	 * @throws IllegalArgumentException
+	 *             if the array is too small.
+	 */
+	public void copyArgb(int[] argb) throws IllegalArgumentException {
+		copyArgb(argb, GRAY_COLORS);
+	}
 
-		return Bits.set(Bits.set(0, 0, lines.get(y).lsb().testBit(x)), 1, lines.get(y).msb().testBit(x));
+	/**
+	 * copies the ARGB colors of all the pixels of this, line after line, into the
+	 * given array, the color of index c being mapped to colorMap[c].
+	 * 
+	 * @param argb
+	 *            the array to fill, of at least width * height elements.
+	 * @param colorMap
+	 *            the ARGB values of the 4 colors.
+	 * @throws IllegalArgumentException
+	 *             if the array is too small or if there isn't 4 colors.
+	 */
+	public void copyArgb(int[] argb, int[] colorMap) throws IllegalArgumentException {
+		Preconditions.checkArgument(argb.length >= width * height && colorMap.length == 4);
+		int p = 0;
+		for (int i = 0; i < msb.length; ++i) {
+			long m = msb[i], l = lsb[i];
+			for (int x = 0; x < pixelsInWord(i); ++x) {
+				argb[p++] = colorMap[(int) (m & 1L) << 1 | (int) (l & 1L)];
+				m >>>= 1;
+				l >>>= 1;
+			}
+		}
 	}
 
 	/*
@@ -74,7 +154,7 @@ public final class LcdImage {
 		if (that.getClass() != this.getClass())
 			return false;
 		LcdImage b = (LcdImage) that;
-		return lines.equals(b.lines);
+		return width == b.width && height == b.height && Arrays.equals(msb, b.msb) && Arrays.equals(lsb, b.lsb);
 	}
 
 	/*
@@ -84,7 +164,89 @@ public final class LcdImage {
 	 */
 	@Override
 	public int hashCode() {
-		return lines.hashCode();
+		return Objects.hash(Arrays.hashCode(msb), Arrays.hashCode(lsb));
+	}
+
+	/*
+	 * returns the number of pixels stored in the word of the given index, which is
+	 * 64 except for the last word of a line whose width isn't a multiple of 64.
+	 */
+	private int pixelsInWord(int i) {
+		return Math.min(Long.SIZE, width - (i % wordsPerLine) * Long.SIZE);
+	}
+
+	/*
+	 * copies the colors of the given line into the line of the given index.
+	 */
+	void setLine(int y, LcdImageLine line) {
+		Objects.checkIndex(y, height);
+		Preconditions.checkArgument(line.size() == width);
+		for (int i = 0; i < wordsPerLine; ++i) {
+			msb[y * wordsPerLine + i] = line.msb().word(i);
+			lsb[y * wordsPerLine + i] = line.lsb().word(i);
+		}
+	}
+
+	/*
+	 * copies all the pixels of the given image, of the same size, into this.
+	 */
+	void copyFrom(LcdImage that) {
+		Preconditions.checkArgument(that.width == width && that.height == height);
+		System.arraycopy(that.msb, 0, msb, 0, msb.length);
+		System.arraycopy(that.lsb, 0, lsb, 0, lsb.length);
+	}
+
+	/*
+	 * mixes the pixels of this image into the given hash.
+	 */
+	long digest(long hash) {
+		for (int i = 0; i < msb.length; ++i) {
+			hash = Long.rotateLeft((hash ^ msb[i]) * 0x100000001B3L, 31);
+			hash = Long.rotateLeft((hash ^ lsb[i]) * 0x100000001B3L, 31);
+		}
+		return hash;
+	}
+
+	/**
+	 * returns a copy of this image, which doesn't change when this one does.
+	 * 
+	 * @return the copy.
+	 */
+	public LcdImage copy() {
+		LcdImage that = new LcdImage(width, height);
+		that.copyFrom(this);
+		return that;
+	}
+
+	/*
+	 * sets all the pixels of this to the color 0.
+	 */
+	void clear() {
+		Arrays.fill(msb, 0L);
+		Arrays.fill(lsb, 0L);
+	}
+
+	/*
+	 * returns the number of bytes of the pixels saved by saveState.
+	 */
+	int stateSize() {
+		return 2 * msb.length * Long.BYTES;
+	}
+
+	/*
+	 * writes the pixels of this at the position of the buffer, and advances it.
+	 */
+	void saveState(ByteBuffer buffer) {
+		buffer.asLongBuffer().put(msb).put(lsb);
+		buffer.position(buffer.position() + stateSize());
+	}
+
+	/*
+	 * reads the pixels of this at the position of the buffer, and advances it.
+	 */
+	void loadState(ByteBuffer buffer) {
+		buffer.asLongBuffer().get(msb).get(lsb);
+		buffer.position(buffer.position() + stateSize());
 	}
 
 	/**
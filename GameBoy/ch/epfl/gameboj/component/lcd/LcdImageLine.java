@@ -97,28 +97,44 @@ public final class LcdImageLine {
 	}
 
 	/**
-	 * transforms the colors of this line depending of the given palet.
+	 * transforms the colors of this line depending of the given palet. The palette
+	 * is applied by {@link BitVector#lookup}: the new value of each bit plane is, for each
+	 * of the 4 colors, the mask of the pixels having that color if the palette
+	 * sets the bit of the plane for it.
 	 * 
 	 * @param palette
+	 * @throws IllegalArgumentException
+	 *             if the palette isn't an 8 bits value.
 	 */
-	public LcdImageLine mapColors(int palette) { // a revoir
-		if (palette == 0b11_10_01_00)
-			return this;
-		BitVector newColor3Msb = (msb.and(lsb)).and(new BitVector(size(), Bits.test(palette, 7)));
-		BitVector newColor3Lsb = (msb.and(lsb)).and(new BitVector(size(), Bits.test(palette, 6)));
-
-		BitVector newColor2Msb = (((msb.and(lsb)).not()).and(msb)).and(new BitVector(size(), Bits.test(palette, 5)));
-		BitVector newColor2Lsb = (((msb.and(lsb)).not()).and(msb)).and(new BitVector(size(), Bits.test(palette, 4)));
-
-		BitVector newColor1Msb = (((msb.and(lsb)).not()).and(lsb)).and(new BitVector(size(), Bits.test(palette, 3)));
-		BitVector newColor1Lsb = (((msb.and(lsb)).not()).and(lsb)).and(new BitVector(size(), Bits.test(palette, 2)));
+	public LcdImageLine mapColors(int palette) throws IllegalArgumentException {
+		return mapColors(palettePlanes(Preconditions.checkBits8(palette)));
+	}
 
-		BitVector newColor0Msb = ((msb.or(lsb)).not()).and(new BitVector(size(), Bits.test(palette, 1)));
-		BitVector newColor0Lsb = ((msb.or(lsb)).not()).and(new BitVector(size(), Bits.test(palette, 0)));
+	/**
+	 * does the same as {@link #mapColors(int)} with a palette decoded by
+	 * {@link #palettePlanes(int)}.
+	 * 
+	 * @param planes
+	 *            the decoded palette.
+	 */
+	LcdImageLine mapColors(long[] planes) {
+		if (planes == PALETTE_PLANES[IDENTITY_PALETTE])
+			return this;
+		return new LcdImageLine(mapPlane(planes, 1), mapPlane(planes, 0), opacity);
+	}
 
-		BitVector newMsb = ((newColor3Msb.or(newColor2Msb)).or(newColor1Msb)).or(newColor0Msb);
-		BitVector newLsb = ((newColor3Lsb.or(newColor2Lsb)).or(newColor1Lsb)).or(newColor0Lsb);
-		return new LcdImageLine(newMsb, newLsb, opacity);
+	/**
+	 * returns the given palette decoded for {@link #mapColors(long[])}, shared by
+	 * all its users, which mustn't modify it: for each plane (0 for lsb, 1 for
+	 * msb) and each of the 4 colors, at the index 4 * plane + color, a mask full
+	 * of ones if the palette sets the bit of the plane for that color, of zeros
+	 * otherwise.
+	 * 
+	 * @param palette
+	 *            the palette, an 8 bits value.
+	 */
+	static long[] palettePlanes(int palette) {
+		return PALETTE_PLANES[palette];
 	}
 
 	/**
@@ -143,11 +159,9 @@ public final class LcdImageLine {
 	 * @return LcdImageLine
 	 */
 	public LcdImageLine below(LcdImageLine that, BitVector givenOpacity) {
-		Preconditions.checkArgument(that.size() == opacity.size());
-		BitVector newMsb = (that.msb.and(givenOpacity)).or(this.msb.and(givenOpacity.not()));
-		BitVector newLsb = (that.lsb.and(givenOpacity)).or(this.lsb.and(givenOpacity.not()));
-		BitVector newOpacity = this.opacity.or(givenOpacity);
-		return new LcdImageLine(newMsb, newLsb, newOpacity);
+		Preconditions.checkArgument(that.size() == opacity.size() && givenOpacity.size() == opacity.size());
+		return new LcdImageLine(BitVector.select(givenOpacity, that.msb, msb),
+				BitVector.select(givenOpacity, that.lsb, lsb), opacity.or(givenOpacity));
 	}
 
 	/**
@@ -161,11 +175,14 @@ public final class LcdImageLine {
 	 */
 	public LcdImageLine join(LcdImageLine that, int index) {
 		Preconditions.checkArgument(that.size() == opacity.size() && index >= 0 && index < size());
-		BitVector b1 = new BitVector(size(), true).shift(index);
-		LcdImageLine l = below(new LcdImageLine(that.msb, that.lsb, b1));
-        BitVector newOpacity = (that.opacity().and(b1)).or(this.opacity.and(b1.not()));
-
-		return new LcdImageLine(l.msb, l.lsb, newOpacity);
+		BitVector.Builder fromThat = new BitVector.Builder(size());
+		for (int i = 0; i < wordCount(); ++i) {
+			int first = index - i * Long.SIZE;
+			fromThat.setWord(i, (first <= 0) ? -1L : (first >= Long.SIZE) ? 0L : -1L << first);
+		}
+		BitVector mask = fromThat.build();
+		return new LcdImageLine(BitVector.select(mask, that.msb, msb), BitVector.select(mask, that.lsb, lsb),
+				BitVector.select(mask, that.opacity, opacity));
 	}
 
 	/*
@@ -194,6 +211,29 @@ public final class LcdImageLine {
 		return Arrays.hashCode(new BitVector[] { this.msb, this.lsb, this.opacity }); // not sure
 	}
 
+	private static final int IDENTITY_PALETTE = 0b11_10_01_00;
+	// the 256 palettes decoded once, see palettePlanes()
+	private static final long[][] PALETTE_PLANES = new long[1 << Byte.SIZE][2 * 4];
+	static {
+		for (int palette = 0; palette < PALETTE_PLANES.length; ++palette)
+			for (int plane = 0; plane < 2; ++plane)
+				for (int color = 0; color < 4; ++color)
+					PALETTE_PLANES[palette][4 * plane + color] = Bits.test(palette, 2 * color + plane) ? -1L : 0;
+	}
+
+	private int wordCount() {
+		return (size() + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/*
+	 * returns the given bit plane (1 for msb, 0 for lsb) of this line once the
+	 * decoded palette is applied to it.
+	 */
+	private BitVector mapPlane(long[] planes, int plane) {
+		int p = 4 * plane;
+		return BitVector.lookup(msb, lsb, planes[p], planes[p + 1], planes[p + 2], planes[p + 3]);
+	}
+
 	/**
 	 * a line Builder.
 	 *
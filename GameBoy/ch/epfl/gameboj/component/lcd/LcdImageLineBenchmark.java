@@ -0,0 +1,133 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Random;
+
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+
+/**
+ * a microbenchmark comparing the composition of lines by LcdImageLine, word by
+ * word or with the Vector API, with the former one chaining the operations of
+ * BitVector, each allocating a vector. For each operation and each size of
+ * line, it checks that both give the same lines and prints the best time per
+ * operation of several rounds.
+ *
+ * <pre>
+ * usage: LcdImageLineBenchmark [iterations]
+ * </pre>
+ *
+ * The Vector API is used if its module is added and the system property
+ * gameboj.vector isn't false, see {@link BitVector#vectorized()}.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class LcdImageLineBenchmark {
+
+	private static final int[] SIZES = { LcdController.LCD_WIDTH, 256 };
+	private static final int LINES = 64;
+	private static final int ROUNDS = 5;
+	private static final int DEFAULT_ITERATIONS = 200_000;
+
+	private interface Operation {
+		LcdImageLine apply(LcdImageLine a, LcdImageLine b, int n);
+	}
+
+	// written with the results, so that computing them can't be skipped
+	private static long sink;
+
+	private LcdImageLineBenchmark() {
+	}
+
+	/**
+	 * runs the benchmark and prints its results.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+		System.out.println("vectorized: " + BitVector.vectorized());
+		for (int size : SIZES) {
+			LcdImageLine[] lines = randomLines(size, new Random(size));
+			compare("below", size, lines, iterations, (a, b, n) -> a.below(b), (a, b, n) -> oldBelow(a, b));
+			compare("join", size, lines, iterations, (a, b, n) -> a.join(b, n % size),
+					(a, b, n) -> oldJoin(a, b, n % size));
+			compare("mapColors", size, lines, iterations, (a, b, n) -> a.mapColors(n & 0xFF),
+					(a, b, n) -> oldMapColors(a, n & 0xFF));
+		}
+	}
+
+	private static void compare(String name, int size, LcdImageLine[] lines, int iterations, Operation current,
+			Operation old) {
+		for (int n = 0; n < lines.length * 256; ++n) {
+			LcdImageLine a = lines[n % lines.length], b = lines[(n + 1) % lines.length];
+			if (!current.apply(a, b, n).equals(old.apply(a, b, n)))
+				throw new Error(name + " gives different lines for " + size + " pixels");
+		}
+		double currentNanos = Double.MAX_VALUE, oldNanos = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; ++round) {
+			currentNanos = Math.min(currentNanos, time(current, lines, iterations));
+			oldNanos = Math.min(oldNanos, time(old, lines, iterations));
+		}
+		System.out.printf("%-9s %3d pixels: %7.1f ns/op, BitVector chains %7.1f ns/op (x%.1f)%n", name, size,
+				currentNanos, oldNanos, oldNanos / currentNanos);
+	}
+
+	private static double time(Operation operation, LcdImageLine[] lines, int iterations) {
+		long hash = 0;
+		long start = System.nanoTime();
+		for (int n = 0; n < iterations; ++n)
+			hash ^= operation.apply(lines[n % lines.length], lines[(n + 1) % lines.length], n).msb().word(0);
+		long nanos = System.nanoTime() - start;
+		sink ^= hash;
+		return (double) nanos / iterations;
+	}
+
+	private static LcdImageLine[] randomLines(int size, Random random) {
+		LcdImageLine[] lines = new LcdImageLine[LINES];
+		for (int i = 0; i < lines.length; ++i) {
+			LcdImageLine.Builder builder = new LcdImageLine.Builder(size);
+			for (int b = 0; b < size / Byte.SIZE; ++b)
+				builder.setBytes(b, random.nextInt(1 << Byte.SIZE), random.nextInt(1 << Byte.SIZE));
+			lines[i] = builder.build();
+		}
+		return lines;
+	}
+
+	// the former composition of lines, by chains of BitVector operations
+
+	private static LcdImageLine oldBelow(LcdImageLine below, LcdImageLine that) {
+		BitVector o = that.opacity();
+		BitVector newMsb = (that.msb().and(o)).or(below.msb().and(o.not()));
+		BitVector newLsb = (that.lsb().and(o)).or(below.lsb().and(o.not()));
+		return new LcdImageLine(newMsb, newLsb, below.opacity().or(o));
+	}
+
+	private static LcdImageLine oldJoin(LcdImageLine line, LcdImageLine that, int index) {
+		BitVector b1 = new BitVector(line.size(), true).shift(index);
+		LcdImageLine l = oldBelow(line, new LcdImageLine(that.msb(), that.lsb(), b1));
+		BitVector newOpacity = (that.opacity().and(b1)).or(line.opacity().and(b1.not()));
+		return new LcdImageLine(l.msb(), l.lsb(), newOpacity);
+	}
+
+	private static LcdImageLine oldMapColors(LcdImageLine line, int palette) {
+		if (palette == 0b11_10_01_00)
+			return line;
+		BitVector msb = line.msb(), lsb = line.lsb();
+		int size = line.size();
+		BitVector color3 = msb.and(lsb);
+		BitVector color2 = color3.not().and(msb);
+		BitVector color1 = color3.not().and(lsb);
+		BitVector color0 = msb.or(lsb).not();
+		BitVector newMsb = color3.and(new BitVector(size, Bits.test(palette, 7)))
+				.or(color2.and(new BitVector(size, Bits.test(palette, 5))))
+				.or(color1.and(new BitVector(size, Bits.test(palette, 3))))
+				.or(color0.and(new BitVector(size, Bits.test(palette, 1))));
+		BitVector newLsb = color3.and(new BitVector(size, Bits.test(palette, 6)))
+				.or(color2.and(new BitVector(size, Bits.test(palette, 4))))
+				.or(color1.and(new BitVector(size, Bits.test(palette, 2))))
+				.or(color0.and(new BitVector(size, Bits.test(palette, 0))));
+		return new LcdImageLine(newMsb, newLsb, line.opacity());
+	}
+
+}
@@ -0,0 +1,191 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.bits.Bit;
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.lcd.LcdController.LCDC;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * draws the lines of the LCD from a {@link LineState} and the content of the
+ * video and OAM memories it is given.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class LineRenderer {
+
+	private enum SPRITE implements Bit {
+		notUsed0, notUsed1, notUsed2, notUsed3, PALETTE, FLIP_H, FLIP_V, BEHIND_BG
+	}
+
+	private enum plan {
+		FRONT, BACK
+	}
+
+	private enum image {
+		BACKGROUND, WINDOW
+	}
+
+	private static final int BACKGROUND_SIZE = 256;
+	private static final int TILE_SIZE = 8;
+	private static final int octetsPerTile = TILE_SIZE * 2;
+
+	private final Ram VIDEO_RAM, OAM_RAM;
+	private final BitVector zeroBitVector;
+
+	/**
+	 * constructs a renderer reading the tiles and the sprites in the given
+	 * memories.
+	 */
+	LineRenderer(Ram videoRam, Ram oamRam) {
+		VIDEO_RAM = videoRam;
+		OAM_RAM = oamRam;
+		zeroBitVector = new BitVector(LcdController.LCD_WIDTH);
+	}
+
+	/**
+	 * returns true if the window is drawn on the line of the given state.
+	 */
+	static boolean windowDrawn(LineState s) {
+		int wx7 = s.wx - 7;
+		return Bits.test(s.lcdc, LCDC.WIN) && wx7 < LcdController.LCD_WIDTH && wx7 >= 0 && s.ly >= s.wy;
+	}
+
+	/**
+	 * draws the line of the given state.
+	 */
+	LcdImageLine computeLine(LineState s) {
+
+		Boolean spriteON = Bits.test(s.lcdc, LCDC.OBJ);
+		Boolean backGroundOn = Bits.test(s.lcdc, LCDC.BG);
+
+		LcdImageLine backGroundLine = (backGroundOn) ? backGroundLine(s)
+				: new LcdImageLine(zeroBitVector, zeroBitVector, zeroBitVector);
+
+		LcdImageLine backGroundAndWindowLine = !windowDrawn(s) ? backGroundLine
+				: backGroundLine.join(windowLine(s), s.wx - 7);
+
+		if (spriteON) {
+			LcdImageLine backSpritesLine = spritesLine(s, plan.BACK);
+			BitVector opacity = backGroundAndWindowLine.opacity().or(backSpritesLine.opacity().not());
+
+			return backSpritesLine.below(backGroundAndWindowLine, opacity).below(spritesLine(s, plan.FRONT));
+		} else
+			return backGroundAndWindowLine;
+
+	}
+
+	private LcdImageLine backGroundLine(LineState s) {
+
+		return line(s, image.BACKGROUND).build().extractWrapped(LcdController.LCD_WIDTH, s.scx).mapColors(s.bgp);
+
+	}
+
+	private LcdImageLine windowLine(LineState s) {
+
+		return line(s, image.WINDOW).build().extractWrapped(LcdController.LCD_WIDTH, 0).shift(s.wx - 7)
+				.mapColors(s.bgp);
+	}
+
+	private LcdImageLine.Builder line(LineState s, image pt) {
+		LcdImageLine.Builder builder = new LcdImageLine.Builder(BACKGROUND_SIZE);
+		int tilesPerLine = 32;
+		int yInsideImage = (pt == image.WINDOW) ? s.winY : (s.ly + s.scy) % BACKGROUND_SIZE;
+		int tileMap = AddressMap.BG_DISPLAY_DATA[Bits.test(s.lcdc, (pt == image.BACKGROUND) ? LCDC.BG_AREA : LCDC.WIN_AREA)
+				? 1
+				: 0];
+
+		for (int x = 0; x < tilesPerLine; x++) {
+
+			int tileIndex = readVideoRam((yInsideImage / TILE_SIZE) * tilesPerLine + x + tileMap);
+
+			int lsbAddressOfLine = tileBeginningAddress(s, tileIndex) + 2 * (yInsideImage % TILE_SIZE);
+			int msbAddressOfLine = lsbAddressOfLine + 1;
+			builder.setBytes(x, readVideoRam(msbAddressOfLine), readVideoRam(lsbAddressOfLine));
+		}
+		return builder;
+	}
+
+	private int readVideoRam(int address) {
+		return VIDEO_RAM.read(address - AddressMap.VIDEO_RAM_START);
+	}
+
+	private int tileBeginningAddress(LineState s, int tileIndex) {
+		int tileBeginningAddress;
+		if (Bits.test(s.lcdc, LCDC.TILE_SOURCE))
+			tileBeginningAddress = AddressMap.TILE_SOURCE[1] + tileIndex * octetsPerTile;
+		else
+			tileBeginningAddress = (tileIndex >= 0x80) ? AddressMap.TILE_SOURCE[0] + (tileIndex - 0x80) * octetsPerTile
+					: 0x9000 + tileIndex * octetsPerTile;
+		return tileBeginningAddress;
+	}
+
+	private int[] spritesIntersectingLine(LineState s) {
+		int maxSpritesPerLine = 10;
+		int maxSpritesInGameBoy = 40;
+		int counter = 0;
+		int spriteHeight = (Bits.test(s.lcdc, LCDC.OBJ_SIZE) ? 16 : 8);
+
+		int xCoordinateAndIndex[] = new int[maxSpritesPerLine];
+
+		for (int i = 0; i < maxSpritesInGameBoy; i++) {
+			int firstYcoordinateOfSprite = OAM_RAM.read(4 * i) - 16;
+
+			Boolean lineIntersectSprite = s.ly >= firstYcoordinateOfSprite
+					&& s.ly < firstYcoordinateOfSprite + spriteHeight;
+
+			if (lineIntersectSprite && counter < maxSpritesPerLine) {
+				xCoordinateAndIndex[counter] = Bits.make16(OAM_RAM.read(4 * i + 1), i);
+				++counter;
+			}
+		}
+
+		int index[] = new int[counter];
+
+		Arrays.sort(xCoordinateAndIndex, 0, counter);
+
+		for (int i = 0; i < counter; i++)
+			index[i] = Bits.clip(8, xCoordinateAndIndex[i]);
+		return index;
+	}
+
+	private LcdImageLine oneSpriteLine(LineState s, int indexOfSprite) {
+
+		boolean flipH = Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.FLIP_H);
+		boolean flipV = Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.FLIP_V);
+
+		int sizeSprite = (Bits.test(s.lcdc, LCDC.OBJ_SIZE) ? 16 : 8);
+		int firstYcoordinateOfSprite = OAM_RAM.read(4 * indexOfSprite) - 16;
+		int firstXcoordinateofSprite = OAM_RAM.read(4 * indexOfSprite + 1) - 8;
+		long[] palette = Bits.test(OAM_RAM.read(4 * indexOfSprite + 3), SPRITE.PALETTE) ? s.obp1 : s.obp0;
+		int lineInsideSprite = (flipV) ? (sizeSprite - 1) - (s.ly - firstYcoordinateOfSprite)
+				: s.ly - firstYcoordinateOfSprite;
+		int tileIndex = OAM_RAM.read(4 * indexOfSprite + 2);
+		int msb = VIDEO_RAM.read(octetsPerTile * tileIndex + 2 * (lineInsideSprite % octetsPerTile) + 1);
+		int lsb = VIDEO_RAM.read(octetsPerTile * tileIndex + 2 * (lineInsideSprite % octetsPerTile));
+
+		LcdImageLine.Builder builder = new LcdImageLine.Builder(LcdController.LCD_WIDTH);
+		builder.setBytes(0, flipH ? Bits.reverse8(msb) : msb, flipH ? Bits.reverse8(lsb) : lsb);
+
+		return builder.build().shift(firstXcoordinateofSprite).mapColors(palette);
+
+	}
+
+	private LcdImageLine spritesLine(LineState s, plan planType) {
+		LcdImageLine spritesLine = new LcdImageLine(zeroBitVector, zeroBitVector, zeroBitVector);
+
+		for (int indexSprite : spritesIntersectingLine(s)) {
+			boolean BehindBackGround = Bits.test(OAM_RAM.read(indexSprite * 4 + 3), SPRITE.BEHIND_BG);
+
+			if (planType == plan.BACK && BehindBackGround || planType == plan.FRONT && !BehindBackGround)
+				spritesLine = spritesLine.below(oneSpriteLine(s, indexSprite));
+
+		}
+		return spritesLine;
+	}
+
+}
@@ -0,0 +1,16 @@
+package ch.epfl.gameboj.component.lcd;
+
+/**
+ * the values of the registers of the LcdController needed to draw a line, as
+ * they were when the line was drawn, the palettes being decoded by
+ * {@link LcdImageLine#palettePlanes(int)}.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class LineState {
+
+	int ly, lcdc, scy, scx, wy, wx, winY;
+	long[] bgp, obp0, obp1;
+
+}
@@ -1,8 +1,11 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
 /**
@@ -14,7 +17,7 @@ import ch.epfl.gameboj.component.cartridge.Cartridge;
  * @author Karim Sabaa (269647)
  * @author Mohamed Elasfoury (289473)
  */
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Stateful {
 
 	private Cartridge cartridge;
 	private boolean deactivated;
@@ -71,4 +74,47 @@ public final class BootRomController implements Component {
 
 	}
 
+	/**
+	 * the state of the controller includes the one of its cartridge.
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return 1 + cartridge.stateSize();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		buffer.put((byte) (deactivated ? 1 : 0));
+		cartridge.saveState(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		deactivated = buffer.get() != 0;
+		cartridge.loadState(buffer);
+	}
+
+	/**
+	 * copies whether the boot memory of the given controller is deactivated into
+	 * this one. Unlike the saved state, the cartridge isn't copied, see
+	 * {@link Cartridge#fork()}.
+	 * 
+	 * @param that
+	 */
+	public void copyFrom(BootRomController that) {
+		deactivated = that.deactivated;
+	}
+
 }
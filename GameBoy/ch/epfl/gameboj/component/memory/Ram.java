@@ -1,8 +1,15 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Stateful;
 
-public final class Ram {
+public final class Ram implements Stateful {
 
     /**
      * Ram class
@@ -11,13 +18,44 @@ public final class Ram {
      * @autor Karim.(269647)
      * 
      */
-    private final byte[] data;
+    // the memory is split into pages, which can be shared with other memories
+    // and are then copied before being written (copy-on-write). The pages a
+    // memory stops using while no other one uses them are kept to be reused,
+    // so that a page is only allocated when it is shared
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    // shared by all the memories, whose users aren't counted and which is thus
+    // never written nor reused
+    private static final Page ZERO_PAGE = new Page();
+    static {
+        ZERO_PAGE.users.incrementAndGet();
+    }
+
+    // the bytes of the pages, pages[p] being handles[p].bytes
+    private final byte[][] pages;
+    private final Page[] handles;
+    // whether a page is only used by this memory
+    private final boolean[] owned;
+    // the page, if any, to use at the next copy of each page
+    private final Page[] spares;
     private final int size;
 
+    // a page with the number of memories using it
+    private static final class Page {
+        private final byte[] bytes = new byte[PAGE_SIZE];
+        private final AtomicInteger users = new AtomicInteger(1);
+    }
+
     public Ram(int size) {
         Preconditions.checkArgument(size >= 0);
         this.size = size;
-        this.data = new byte[size];
+        int pageCount = (size + PAGE_SIZE - 1) >> PAGE_BITS;
+        this.pages = new byte[pageCount][];
+        this.handles = new Page[pageCount];
+        this.owned = new boolean[pageCount];
+        this.spares = new Page[pageCount];
+        Arrays.fill(pages, ZERO_PAGE.bytes);
+        Arrays.fill(handles, ZERO_PAGE);
     }
 
     /**
@@ -38,18 +76,16 @@ public final class Ram {
      * @param int
      *            index of the byte
      * @throws IndexOutOfBoundsException
-     *             if the passed index is not valid(negative or bigger than the
-     *             size of the array)
+     *             if the passed index is not valid(negative or not smaller than
+     *             the size of the memory)
      * @return byte at passed index
      */
 
     public int read(int index) throws IndexOutOfBoundsException {
 
-        if (index < 0 || index > data.length) {
-            throw new IndexOutOfBoundsException();
-        }
+        Objects.checkIndex(index, size);
 
-        return Byte.toUnsignedInt(data[index]);
+        return Byte.toUnsignedInt(pages[index >> PAGE_BITS][index & (PAGE_SIZE - 1)]);
 
     }
 
@@ -62,8 +98,8 @@ public final class Ram {
      * @param int
      *            value of the byte
      * @throws IndexOutOfBoundsException
-     *             if the passed index is not valid(negative or bigger than the
-     *             size of the array)
+     *             if the passed index is not valid(negative or not smaller than
+     *             the size of the memory)
      * @throws IllegalArgument
      *             if the passed value isn't between 0 and 0XFF
      * 
@@ -71,11 +107,99 @@ public final class Ram {
     public void write(int index, int value) throws IndexOutOfBoundsException {
         Preconditions.checkBits8(value);
 
-        if (index < 0 || index > data.length) {
-            throw new IndexOutOfBoundsException();
+        Objects.checkIndex(index, size);
+
+        ownedPage(index >> PAGE_BITS, true)[index & (PAGE_SIZE - 1)] = (byte) value;
+    }
+
+    /**
+     * Copies the whole content of the given memory, of the same size, into this
+     * one. The pages are shared by both memories until one of them writes in
+     * them, so the copy itself is cheap; as it marks the pages of the given
+     * memory as shared, it must not be used by another thread meanwhile.
+     * 
+     * @param that
+     *            the memory to copy.
+     * @throws IllegalArgumentException
+     *             if the sizes of the memories are different.
+     */
+    public void copyFrom(Ram that) throws IllegalArgumentException {
+        Preconditions.checkArgument(that.size == size);
+        for (int p = 0; p < pages.length; ++p) {
+            Page page = that.handles[p];
+            if (page != ZERO_PAGE)
+                page.users.incrementAndGet();
+            use(p, page);
         }
+        Arrays.fill(owned, false);
+        Arrays.fill(that.owned, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return size;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (int p = 0; p < pages.length; ++p)
+            buffer.put(pages[p], 0, pageLength(p));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (buffer.remaining() < size)
+            throw new BufferUnderflowException();
+        for (int p = 0; p < pages.length; ++p)
+            buffer.get(ownedPage(p, false), 0, pageLength(p));
+    }
+
+    // returns the given page, replaced first by a spare or new page if it is
+    // shared, into which its content is copied if it must be kept
+    private byte[] ownedPage(int p, boolean keep) {
+        if (!owned[p]) {
+            if (handles[p].users.get() != 1) {
+                Page page = spares[p] != null ? spares[p] : new Page();
+                spares[p] = null;
+                if (keep)
+                    System.arraycopy(pages[p], 0, page.bytes, 0, PAGE_SIZE);
+                use(p, page);
+            }
+            owned[p] = true;
+        }
+        return pages[p];
+    }
+
+    // replaces the given page by the given one, already counting this memory
+    // as one of its users, keeping the former one as spare if it isn't used
+    // anymore
+    private void use(int p, Page page) {
+        Page former = handles[p];
+        if (former != ZERO_PAGE && former.users.decrementAndGet() == 0) {
+            former.users.set(1);
+            spares[p] = former;
+        }
+        handles[p] = page;
+        pages[p] = page.bytes;
+    }
 
-        data[index] = (byte) value;
+    private int pageLength(int p) {
+        return Math.min(PAGE_SIZE, size - (p << PAGE_BITS));
     }
 
 }
@@ -0,0 +1,392 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.RewindBuffer;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.RenderPolicy;
+import ch.epfl.gameboj.movie.Movie;
+import ch.epfl.gameboj.movie.MovieRecorder;
+
+/**
+ * the emulation of a GameBoy on its own thread, in slices of the frames due
+ * according to a pacer, or as fast as possible when its speed is uncapped. The
+ * frames are handed to the front end as ARGB pixels through a triple buffer, so
+ * neither the emulation nor the front end ever waits for the other; the keys
+ * are given to the GameBoy by posting them to its joypad. A snapshot is taken
+ * after each slice, and while rewinding, the loop steps back through them at
+ * the pace of the slices instead of emulating, except when a movie is being
+ * recorded. To hide the frame or so games take to react to the keys, the
+ * displayed images can be run ahead: a fork of the GameBoy is emulated a few
+ * frames further with the keys currently pressed, then discarded once its last
+ * image is displayed.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class EmulationLoop implements Runnable {
+
+	/**
+	 * the speeds of the emulation, relative to the real time.
+	 */
+	public enum Speed {
+		NORMAL(1), DOUBLE(2), QUADRUPLE(4), OCTUPLE(8), UNCAPPED(0);
+
+		private final int multiplier;
+
+		private Speed(int multiplier) {
+			this.multiplier = multiplier;
+		}
+
+		/**
+		 * @return the number of frames emulated per frame of real time, or 0 if the
+		 *         speed is uncapped.
+		 */
+		public int multiplier() {
+			return multiplier;
+		}
+
+		/**
+		 * @return the next faster speed, or the normal one after the uncapped
+		 *         speed.
+		 */
+		public Speed next() {
+			return values()[(ordinal() + 1) % values().length];
+		}
+	}
+
+	/**
+	 * the maximal number of frames the displayed images can be ahead of the
+	 * GameBoy.
+	 */
+	public static final int MAX_RUN_AHEAD = 4;
+
+	private static final long MOVIE_KEYFRAME_CYCLES = 300 * LcdController.CYCLES_PER_FRAME;
+
+	private final GameBoy gameBoy;
+	private final FramePacer pacer;
+	private final FrameSkipController frameSkip;
+	private final RewindBuffer rewind;
+	private final TripleBuffer<int[]> frames;
+	// the GameBoy running ahead, refreshed from the emulated one at each slice
+	private GameBoy future;
+	private volatile boolean stopped, rewinding, recording;
+	private volatile Consumer<? super Movie> movieConsumer;
+	private MovieRecorder recorder;
+	private volatile Speed speed = Speed.NORMAL;
+	private volatile int runAhead;
+	private volatile long skippedFrames, droppedFrames, maxJitterNanos;
+	// written by the emulation thread only
+	private volatile long cycles, frameCount, emulationNanos, conversionNanos;
+
+	/**
+	 * constructs the emulation loop of the given GameBoy.
+	 * 
+	 * @param gameBoy
+	 * @param pacer
+	 *            decides when and how many frames are emulated.
+	 * @param frameSkip
+	 *            decides which slices are displayed.
+	 * @param rewind
+	 *            the history of the GameBoy, only used by the loop.
+	 * @throws NullPointerException
+	 *             if one of the arguments is null.
+	 */
+	public EmulationLoop(GameBoy gameBoy, FramePacer pacer, FrameSkipController frameSkip, RewindBuffer rewind)
+			throws NullPointerException {
+		this.gameBoy = Objects.requireNonNull(gameBoy);
+		this.pacer = Objects.requireNonNull(pacer);
+		this.frameSkip = Objects.requireNonNull(frameSkip);
+		this.rewind = Objects.requireNonNull(rewind);
+		frames = new TripleBuffer<>(() -> new int[LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT]);
+	}
+
+	/**
+	 * emulates the GameBoy until the loop is stopped, at its current speed.
+	 */
+	@Override
+	public void run() {
+		while (!stopped) {
+			updateRecording();
+			Speed s = speed;
+			boolean rewinds = rewinding && recorder == null;
+			if (s == Speed.UNCAPPED && !rewinds) {
+				uncappedSlice();
+				pacer.restart();
+				continue;
+			}
+			int due = pacer.awaitFrames();
+			if (rewinds) {
+				rewindSlice(due * Math.max(1, s.multiplier()));
+				continue;
+			}
+			slice(gameBoy.cycles() + (long) due * s.multiplier() * LcdController.CYCLES_PER_FRAME,
+					due * FramePacer.GAMEBOY_FRAME_NANOS);
+			droppedFrames = pacer.droppedFrames();
+			maxJitterNanos = pacer.maxJitterNanos();
+		}
+	}
+
+	/**
+	 * sets the speed of the emulation, from any thread. It is taken into account
+	 * from the next slice.
+	 * 
+	 * @param speed
+	 * @throws NullPointerException
+	 *             if the speed is null.
+	 */
+	public void setSpeed(Speed speed) throws NullPointerException {
+		this.speed = Objects.requireNonNull(speed);
+	}
+
+	/**
+	 * @return the speed of the emulation.
+	 */
+	public Speed speed() {
+		return speed;
+	}
+
+	/**
+	 * sets the number of frames the displayed images are ahead of the GameBoy,
+	 * from any thread. It is taken into account from the next slice, except at
+	 * the uncapped speed and while rewinding, where the images are never ahead.
+	 * 
+	 * @param frames
+	 *            the number of frames, 0 for none.
+	 * @throws IllegalArgumentException
+	 *             if the number of frames is negative or greater than
+	 *             {@link #MAX_RUN_AHEAD}.
+	 */
+	public void setRunAhead(int frames) throws IllegalArgumentException {
+		Preconditions.checkArgument(frames >= 0 && frames <= MAX_RUN_AHEAD);
+		runAhead = frames;
+	}
+
+	/**
+	 * @return the number of frames the displayed images are ahead of the
+	 *         GameBoy.
+	 */
+	public int runAhead() {
+		return runAhead;
+	}
+
+	/**
+	 * starts or stops rewinding, from any thread. It is taken into account from
+	 * the next slice.
+	 * 
+	 * @param rewinding
+	 */
+	public void setRewinding(boolean rewinding) {
+		this.rewinding = rewinding;
+	}
+
+	/**
+	 * @return whether the loop is rewinding.
+	 */
+	public boolean rewinding() {
+		return rewinding;
+	}
+
+	/**
+	 * starts recording a movie, from any thread. It is taken into account from
+	 * the next slice, and the loop doesn't rewind until the recording stops.
+	 */
+	public void startRecording() {
+		recording = true;
+	}
+
+	/**
+	 * stops recording the movie, from any thread. It is taken into account from
+	 * the next slice, after which the movie is given to the consumer, by the
+	 * emulation thread.
+	 * 
+	 * @param consumer
+	 *            the consumer of the movie.
+	 * @throws NullPointerException
+	 *             if the consumer is null.
+	 */
+	public void stopRecording(Consumer<? super Movie> consumer) throws NullPointerException {
+		movieConsumer = Objects.requireNonNull(consumer);
+		recording = false;
+	}
+
+	/**
+	 * @return whether a movie is being recorded, or is about to be.
+	 */
+	public boolean recording() {
+		return recording;
+	}
+
+	/**
+	 * stops the loop at the end of its current slice.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * returns the ARGB pixels of the latest frame emulated, or null if there was
+	 * no new frame since the last call. Must only be called by one thread, the
+	 * pixels staying valid until its next call.
+	 */
+	public int[] latestFrame() {
+		return frames.takeLatest();
+	}
+
+	/**
+	 * @return the number of frames not drawn, to be read from any thread.
+	 */
+	public long skippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * @return the number of frames dropped by the pacer after stalls, to be read
+	 *         from any thread.
+	 */
+	public long droppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return the maximal lateness of the loop on a deadline of the pacer, in
+	 *         nanoseconds, to be read from any thread.
+	 */
+	public long maxJitterNanos() {
+		return maxJitterNanos;
+	}
+
+	/**
+	 * @return the number of cycles emulated, to be read from any thread.
+	 */
+	public long cycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the number of frames emitted by the LCD controller, drawn or not, to
+	 *         be read from any thread.
+	 */
+	public long frames() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the total time spent emulating, in nanoseconds, to be read from any
+	 *         thread.
+	 */
+	public long emulationNanos() {
+		return emulationNanos;
+	}
+
+	/**
+	 * @return the total time spent converting the frames into ARGB pixels, in
+	 *         nanoseconds, to be read from any thread.
+	 */
+	public long conversionNanos() {
+		return conversionNanos;
+	}
+
+	private void slice(long target, long sliceNanos) {
+		LcdController lcd = gameBoy.lcdController();
+		boolean display = frameSkip.display(sliceNanos);
+		int ahead = display ? runAhead : 0;
+
+		// only the frames which can still be the last complete one of the slice
+		// are drawn, also when running ahead, as the copy keeps the lines of the
+		// images which it doesn't draw again
+		long t0 = System.nanoTime();
+		run(gameBoy, target, display);
+		rewind.capture();
+		if (recorder != null)
+			recorder.update();
+		LcdController displayed = lcd;
+		if (ahead > 0) {
+			if (future == null)
+				future = gameBoy.fork();
+			else
+				future.copyFrom(gameBoy);
+			run(future, target + ahead * LcdController.CYCLES_PER_FRAME, true);
+			displayed = future.lcdController();
+		}
+		long t1 = System.nanoTime();
+		frameSkip.emulated(t1 - t0, display);
+		emulationNanos += t1 - t0;
+
+		if (display)
+			frameSkip.converted(publish(displayed));
+		updateCounters(lcd);
+	}
+
+	// emulates the given GameBoy up to the target, drawing only the frames which
+	// can be the last complete one if its image is displayed
+	private static void run(GameBoy gameBoy, long target, boolean display) {
+		LcdController lcd = gameBoy.lcdController();
+		lcd.setRenderPolicy(RenderPolicy.NEVER);
+		if (display) {
+			gameBoy.runUntil(Math.max(gameBoy.cycles(), target - 2 * LcdController.CYCLES_PER_FRAME));
+			lcd.setRenderPolicy(RenderPolicy.ALWAYS);
+		}
+		gameBoy.runUntil(target);
+	}
+
+	// emulates undrawn frames during one frame of real time, then draws and
+	// publishes one
+	private void uncappedSlice() {
+		LcdController lcd = gameBoy.lcdController();
+		long start = System.nanoTime();
+		lcd.setRenderPolicy(RenderPolicy.NEVER);
+		do
+			gameBoy.runUntil(gameBoy.cycles() + LcdController.CYCLES_PER_FRAME);
+		while (System.nanoTime() - start < FramePacer.GAMEBOY_FRAME_NANOS);
+		lcd.setRenderPolicy(RenderPolicy.ALWAYS);
+		gameBoy.runUntil(gameBoy.cycles() + 2 * LcdController.CYCLES_PER_FRAME);
+		rewind.capture();
+		if (recorder != null)
+			recorder.update();
+		emulationNanos += System.nanoTime() - start;
+		publish(lcd);
+		updateCounters(lcd);
+	}
+
+	private void updateRecording() {
+		if (recording && recorder == null) {
+			recorder = new MovieRecorder(gameBoy, MOVIE_KEYFRAME_CYCLES);
+		} else if (!recording && recorder != null) {
+			movieConsumer.accept(recorder.finish());
+			recorder = null;
+		}
+	}
+
+	// steps back by the given number of snapshots, as far as there are, and
+	// publishes the image of the last one
+	private void rewindSlice(int steps) {
+		LcdController lcd = gameBoy.lcdController();
+		boolean stepped = false;
+		for (int i = 0; i < steps && rewind.stepBack(); ++i)
+			stepped = true;
+		if (stepped)
+			publish(lcd);
+		updateCounters(lcd);
+	}
+
+	// returns the time taken to convert and publish the frame
+	private long publish(LcdController lcd) {
+		long start = System.nanoTime();
+		lcd.currentImage().copyArgb(frames.back());
+		frames.publish();
+		long nanos = System.nanoTime() - start;
+		conversionNanos += nanos;
+		return nanos;
+	}
+
+	private void updateCounters(LcdController lcd) {
+		skippedFrames = lcd.skippedFrames();
+		frameCount = lcd.frames();
+		cycles = gameBoy.cycles();
+	}
+
+}
@@ -0,0 +1,159 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.concurrent.locks.LockSupport;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * paces an emulation at a fixed frame rate. Each call to
+ * {@link #awaitFrames()} waits for the deadline of the next frame, sleeping
+ * while it is far and spinning once it is close, and returns the number of
+ * frames due. After a stall, at most a bounded number of frames is caught up,
+ * the others being dropped, so the emulation never tries to make up for the
+ * whole stall at once. It also measures the jitter, the lateness of the thread
+ * on each deadline.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FramePacer {
+
+	/**
+	 * the duration of a frame of the GameBoy, about 1 / 59.73 s, in nanoseconds.
+	 */
+	public static final long GAMEBOY_FRAME_NANOS = Math.round(LcdController.CYCLES_PER_FRAME * 1e9 / (1 << 20));
+
+	private final long frameNanos, spinNanos;
+	private final int maxCatchUpFrames;
+	private boolean started;
+	private long deadline;
+	private long frames, lateFrames, droppedFrames, jitterSum, maxJitter;
+	private double jitterSquaresSum;
+
+	/**
+	 * constructs a pacer.
+	 * 
+	 * @param frameNanos
+	 *            the duration of a frame, in nanoseconds.
+	 * @param maxCatchUpFrames
+	 *            the maximal number of frames due at once.
+	 * @param spinNanos
+	 *            the time before a deadline from which the thread spins instead
+	 *            of sleeping, in nanoseconds.
+	 * @throws IllegalArgumentException
+	 *             if the duration of a frame or the maximal number of frames isn't
+	 *             strictly positive, or if the spinning time is negative.
+	 */
+	public FramePacer(long frameNanos, int maxCatchUpFrames, long spinNanos) throws IllegalArgumentException {
+		Preconditions.checkArgument(frameNanos > 0 && maxCatchUpFrames > 0 && spinNanos >= 0);
+		this.frameNanos = frameNanos;
+		this.maxCatchUpFrames = maxCatchUpFrames;
+		this.spinNanos = spinNanos;
+	}
+
+	/**
+	 * waits for the deadline of the next frame, the first call not waiting, and
+	 * returns the number of frames due, between 1 and the maximal number of
+	 * frames caught up.
+	 */
+	public int awaitFrames() {
+		long now = System.nanoTime();
+		if (!started) {
+			deadline = now;
+			started = true;
+		}
+		if (now < deadline)
+			now = waitUntil(deadline);
+
+		long jitter = now - deadline;
+		++frames;
+		jitterSum += jitter;
+		jitterSquaresSum += (double) jitter * jitter;
+		maxJitter = Math.max(maxJitter, jitter);
+
+		long due = 1 + jitter / frameNanos;
+		if (due > 1)
+			++lateFrames;
+		if (due > maxCatchUpFrames) {
+			droppedFrames += due - maxCatchUpFrames;
+			deadline += (due - maxCatchUpFrames) * frameNanos;
+			due = maxCatchUpFrames;
+		}
+		deadline += due * frameNanos;
+		return (int) due;
+	}
+
+	/**
+	 * restarts the pacing: the next call to {@link #awaitFrames()} doesn't wait,
+	 * the following deadlines being counted from it. To be called after a pause
+	 * of the pacing, so that it isn't taken as a stall.
+	 */
+	public void restart() {
+		started = false;
+	}
+
+	private long waitUntil(long time) {
+		long remaining;
+		while ((remaining = time - System.nanoTime()) > spinNanos)
+			LockSupport.parkNanos(remaining - spinNanos);
+		long now;
+		while ((now = System.nanoTime()) < time)
+			Thread.onSpinWait();
+		return now;
+	}
+
+	/**
+	 * @return the number of deadlines waited for.
+	 */
+	public long frames() {
+		return frames;
+	}
+
+	/**
+	 * @return the number of deadlines missed by more than a frame.
+	 */
+	public long lateFrames() {
+		return lateFrames;
+	}
+
+	/**
+	 * @return the number of frames dropped instead of being caught up.
+	 */
+	public long droppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return the mean jitter, in nanoseconds.
+	 */
+	public double meanJitterNanos() {
+		return frames == 0 ? 0 : (double) jitterSum / frames;
+	}
+
+	/**
+	 * @return the standard deviation of the jitter, in nanoseconds.
+	 */
+	public double jitterDeviationNanos() {
+		if (frames == 0)
+			return 0;
+		double mean = meanJitterNanos();
+		return Math.sqrt(Math.max(0, jitterSquaresSum / frames - mean * mean));
+	}
+
+	/**
+	 * @return the maximal jitter, in nanoseconds.
+	 */
+	public long maxJitterNanos() {
+		return maxJitter;
+	}
+
+	/**
+	 * resets the jitter statistics and the counts of frames.
+	 */
+	public void resetStatistics() {
+		frames = lateFrames = droppedFrames = jitterSum = maxJitter = 0;
+		jitterSquaresSum = 0;
+	}
+
+}
@@ -0,0 +1,72 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * decides, at each tick of the front end, whether its frame is displayed. When
+ * displaying every frame costs more than the time between two ticks, some
+ * ticks aren't displayed (and their frames aren't drawn), so a slow host drops
+ * frames instead of falling further and further behind. The number of frames
+ * emulated in one tick is bounded by the {@link FramePacer}.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FrameSkipController {
+
+	private final int maxSkippedInARow;
+	private long displayCost;
+	private int skippedInARow;
+
+	/**
+	 * constructs a controller.
+	 * 
+	 * @param maxSkippedInARow
+	 *            the maximal number of consecutive ticks not displayed.
+	 * @throws IllegalArgumentException
+	 *             if the argument isn't strictly positive.
+	 */
+	public FrameSkipController(int maxSkippedInARow) throws IllegalArgumentException {
+		Preconditions.checkArgument(maxSkippedInARow > 0);
+		this.maxSkippedInARow = maxSkippedInARow;
+	}
+
+	/**
+	 * decides whether the frame of this tick is displayed, knowing the time since
+	 * the previous tick.
+	 * 
+	 * @param tickNanos
+	 *            the time since the previous tick, in nanoseconds.
+	 */
+	public boolean display(long tickNanos) {
+		long ticksPerDisplay = (tickNanos <= 0) ? 1 : (displayCost + tickNanos - 1) / tickNanos;
+		if (skippedInARow + 1 >= Math.min(ticksPerDisplay, maxSkippedInARow + 1)) {
+			skippedInARow = 0;
+			return true;
+		}
+		++skippedInARow;
+		return false;
+	}
+
+	/**
+	 * records the time taken by the emulation in this tick.
+	 * 
+	 * @param nanos
+	 * @param displayed
+	 *            whether the frame of this tick is displayed.
+	 */
+	public void emulated(long nanos, boolean displayed) {
+		if (displayed)
+			displayCost = nanos;
+	}
+
+	/**
+	 * records the time taken to convert and display the frame of this tick.
+	 * 
+	 * @param nanos
+	 */
+	public void converted(long nanos) {
+		displayCost += nanos;
+	}
+
+}
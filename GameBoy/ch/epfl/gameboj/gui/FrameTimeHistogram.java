@@ -0,0 +1,97 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * a histogram of the last frame times recorded, with buckets of a fixed width,
+ * the times longer than the last bucket falling into it. Recording a time and
+ * reading the statistics allocate nothing.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FrameTimeHistogram {
+
+	private final long bucketNanos;
+	private final int[] buckets;
+	private final long[] window;
+	private int next, count;
+
+	/**
+	 * constructs an empty histogram.
+	 * 
+	 * @param windowSize
+	 *            the number of last frame times kept.
+	 * @param bucketNanos
+	 *            the width of a bucket, in nanoseconds.
+	 * @param bucketCount
+	 *            the number of buckets.
+	 * @throws IllegalArgumentException
+	 *             if one of the arguments isn't strictly positive.
+	 */
+	public FrameTimeHistogram(int windowSize, long bucketNanos, int bucketCount) throws IllegalArgumentException {
+		Preconditions.checkArgument(windowSize > 0 && bucketNanos > 0 && bucketCount > 0);
+		this.bucketNanos = bucketNanos;
+		buckets = new int[bucketCount];
+		window = new long[windowSize];
+	}
+
+	/**
+	 * records a frame time, forgetting the oldest one if the window is full.
+	 * 
+	 * @param nanos
+	 *            the frame time, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (count == window.length)
+			--buckets[bucket(window[next])];
+		else
+			++count;
+		window[next] = nanos;
+		++buckets[bucket(nanos)];
+		next = (next + 1) % window.length;
+	}
+
+	/**
+	 * @return the number of frame times in the window.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * returns the given percentile of the frame times in the window, as the upper
+	 * bound of its bucket, or 0 if the window is empty.
+	 * 
+	 * @param percent
+	 *            between 0 and 100.
+	 * @throws IllegalArgumentException
+	 *             if the percentage isn't between 0 and 100.
+	 */
+	public long percentileNanos(double percent) throws IllegalArgumentException {
+		Preconditions.checkArgument(percent >= 0 && percent <= 100);
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+		long seen = 0;
+		int b = 0;
+		while ((seen += buckets[b]) < rank)
+			++b;
+		return (b + 1) * bucketNanos;
+	}
+
+	/**
+	 * @return the longest frame time in the window, or 0 if it is empty.
+	 */
+	public long maxNanos() {
+		long max = 0;
+		for (int i = 0; i < count; ++i)
+			max = Math.max(max, window[i]);
+		return max;
+	}
+
+	private int bucket(long nanos) {
+		return (int) Math.min(Math.max(nanos, 0) / bucketNanos, buckets.length - 1);
+	}
+
+}
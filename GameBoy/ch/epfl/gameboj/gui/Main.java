@@ -1,37 +1,60 @@
 package ch.epfl.gameboj.gui;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.RewindBuffer;
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.Joypad.Key;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.movie.Movie;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
 public final class Main extends Application {
+	private static final int MAX_SKIPPED_TICKS_IN_A_ROW = 4;
+	private static final int MAX_CATCH_UP_FRAMES = 4;
+	private static final long SPIN_NANOS = 500_000;
+	private static final String FAST_FORWARD_KEY = "f";
+	private static final String UPSCALER_KEY = "u";
+	private static final String OVERLAY_KEY = "o";
+	private static final String REWIND_KEY = "r";
+	private static final String RECORD_KEY = "m";
+	private static final String RUN_AHEAD_KEY = "l";
+	private static final int REWIND_SNAPSHOTS = 10 * 60;
+	private static final int REWIND_KEYFRAME_INTERVAL = 30;
+	private static final int REWIND_BUDGET_BYTES = 8 << 20;
+	private static final List<Upscaler> UPSCALERS = List.of(Upscaler.nearest(2), Upscaler.scale2x(),
+			Upscaler.xbr2x(), Upscaler.nearest(3), Upscaler.scale3x(), Upscaler.nearest(4), Upscaler.scale4x());
+	private static final long TITLE_UPDATE_NANOS = 1_000_000_000L;
+
 	private final Map<KeyCode, Joypad.Key> directionKeysMap = Map.of(KeyCode.UP, Key.UP, KeyCode.DOWN, Key.DOWN,
 			KeyCode.LEFT, Key.LEFT, KeyCode.RIGHT, Key.RIGHT);
 
 	private final Map<String, Joypad.Key> letterKeysMap = Map.of("a", Key.A, "b", Key.B, "s", Key.START, " ",
 			Key.SELECT);
+
+	private PixelBufferDisplay lcdDisplay;
+	private int upscalerIndex;
    /*
-    * calls the method launch of Application
+    * calls the method launch of Application, with the rom file as argument
     */
 	public static void main(String[] args) {
-        String a = "Super Mario Land (JUE) (V1.1) [!] (1).gb";
-        String b = "flappyboy.gb";
-        String c = "Super Mario Land 2 - 6 Golden Coins (UE) (V1.2) [!].gb";
-		Application.launch(b);
-		
+		Application.launch(args);
 	}
 
 	/*
@@ -41,41 +64,83 @@ public final class Main extends Application {
 	 */
 	@Override
 	public void start(Stage stage) throws Exception {
-		double numberOfCyclesPerNanoSecond = Math.pow(2, 20) / Math.pow(10, 9);
 		List<String> args = getParameters().getRaw();
 		if (args.size() != 1)
 			System.exit(1);
 		File romFile = new File(args.get(0));
 		Cartridge cartridge = Cartridge.ofFile(romFile);
 		GameBoy gameboy = new GameBoy(cartridge);
-		ImageView imageView = new ImageView();
-		imageView.setFitWidth(2f * LcdController.LCD_WIDTH);
-		imageView.setFitHeight(2f * LcdController.LCD_HEIGHT);
+		EmulationLoop emulation = new EmulationLoop(gameboy,
+				new FramePacer(FramePacer.GAMEBOY_FRAME_NANOS, MAX_CATCH_UP_FRAMES, SPIN_NANOS),
+				new FrameSkipController(MAX_SKIPPED_TICKS_IN_A_ROW),
+				new RewindBuffer(gameboy, REWIND_SNAPSHOTS, REWIND_KEYFRAME_INTERVAL, REWIND_BUDGET_BYTES));
+		lcdDisplay = new PixelBufferDisplay(LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT,
+				UPSCALERS.get(upscalerIndex));
+		ImageView imageView = new ImageView(lcdDisplay.image());
+		PerformanceOverlay overlay = new PerformanceOverlay(emulation);
 
 		imageView.setOnKeyPressed((keyEvent) -> {
+			if (keyEvent.getText().equals(FAST_FORWARD_KEY)) {
+				emulation.setSpeed(emulation.speed().next());
+				return;
+			}
+			if (keyEvent.getText().equals(OVERLAY_KEY)) {
+				overlay.toggle();
+				return;
+			}
+			if (keyEvent.getText().equals(REWIND_KEY)) {
+				emulation.setRewinding(true);
+				return;
+			}
+			if (keyEvent.getText().equals(RECORD_KEY)) {
+				if (emulation.recording())
+					emulation.stopRecording(movie -> writeMovie(movie,
+							new File(romFile.getPath() + "-" + System.currentTimeMillis() + ".gbm")));
+				else
+					emulation.startRecording();
+				return;
+			}
+			if (keyEvent.getText().equals(RUN_AHEAD_KEY)) {
+				emulation.setRunAhead((emulation.runAhead() + 1) % (EmulationLoop.MAX_RUN_AHEAD + 1));
+				return;
+			}
+			if (keyEvent.getText().equals(UPSCALER_KEY)) {
+				upscalerIndex = (upscalerIndex + 1) % UPSCALERS.size();
+				lcdDisplay = new PixelBufferDisplay(LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT,
+						UPSCALERS.get(upscalerIndex));
+				imageView.setImage(lcdDisplay.image());
+				stage.sizeToScene();
+				return;
+			}
 			if (keyEvent.getText().length() == 0) {
 				Joypad.Key k = directionKeysMap.get(keyEvent.getCode());
 				if (k != null)
-					gameboy.joypad().keyPressed(k);
+					gameboy.joypad().postKeyPressed(k);
 			} else {
 				Joypad.Key k = letterKeysMap.get(keyEvent.getText());
 				if (k != null)
-					gameboy.joypad().keyPressed(k);
+					gameboy.joypad().postKeyPressed(k);
 			}
 		});
 
 		imageView.setOnKeyReleased((keyEvent) -> {
+			if (keyEvent.getText().equals(REWIND_KEY)) {
+				emulation.setRewinding(false);
+				return;
+			}
 			if (keyEvent.getText().length() == 0) {
 				Joypad.Key k = directionKeysMap.get(keyEvent.getCode());
 				if (k != null)
-					gameboy.joypad().keyReleased(k);
+					gameboy.joypad().postKeyReleased(k);
 			} else {
 				Joypad.Key k = letterKeysMap.get(keyEvent.getText());
 				if (k != null)
-					gameboy.joypad().keyReleased(k);
+					gameboy.joypad().postKeyReleased(k);
 			}
 		});
-		BorderPane borderPane = new BorderPane(imageView);
+		StackPane stackPane = new StackPane(imageView, overlay.node());
+		StackPane.setAlignment(overlay.node(), Pos.TOP_LEFT);
+		BorderPane borderPane = new BorderPane(stackPane);
 		Scene scene = new Scene(borderPane);
         stage.setTitle("GameBoy");
 		stage.setResizable(false);
@@ -84,19 +149,50 @@ public final class Main extends Application {
 		stage.show();
 		imageView.requestFocus();
 		
+		Thread emulationThread = new Thread(emulation, "GameBoy emulation");
+		emulationThread.setDaemon(true);
+		emulationThread.start();
+
 		long start = System.nanoTime();
 		new AnimationTimer() {
+			private long previousTitleUpdate = start;
 
 			@Override
 			public void handle(long now) {
-				long elapsed = now - start;
-				gameboy.runUntil((long) (elapsed * numberOfCyclesPerNanoSecond));
-				imageView.setImage(ImageConverter.convert(gameboy.lcdController().currentImage()));
+				int[] frame = emulation.latestFrame();
+				if (frame != null) {
+					long t0 = System.nanoTime();
+					lcdDisplay.show(frame);
+					overlay.frameDisplayed(now, System.nanoTime() - t0);
+				}
+				overlay.update(now);
 
+				if (now - previousTitleUpdate >= TITLE_UPDATE_NANOS) {
+					stage.setTitle("GameBoy (" + (emulation.recording() ? "recording, " : "")
+							+ (emulation.rewinding() ? "rewinding" : speedText(emulation.speed()))
+							+ (emulation.runAhead() > 0 ? ", " + emulation.runAhead() + " frames ahead" : "")
+							+ ", " + UPSCALERS.get(upscalerIndex)
+							+ ", " + emulation.skippedFrames() + " frames skipped, " + emulation.droppedFrames() + " dropped, max jitter "
+							+ emulation.maxJitterNanos() / 1000 + " us)");
+					previousTitleUpdate = now;
+				}
 			}
 
 		}.start();
 
 	}
 
+	// called by the emulation thread
+	private static void writeMovie(Movie movie, File file) {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			movie.write(out);
+		} catch (IOException e) {
+			System.err.println("cannot write " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static String speedText(EmulationLoop.Speed speed) {
+		return speed == EmulationLoop.Speed.UNCAPPED ? "uncapped" : speed.multiplier() + "x";
+	}
+
 }
@@ -0,0 +1,115 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * a text shown over the screen of the GameBoy, giving the health of its
+ * emulation: its speed relative to the real time, the frames emitted by the
+ * LCD controller per second, the time spent emulating, converting and
+ * displaying the frames, and the percentiles of the time between two frames
+ * displayed. The measures are recorded at each frame without allocating, the
+ * text being updated a few times per second. It must only be used from the
+ * javafx application thread.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class PerformanceOverlay {
+
+	private static final long UPDATE_NANOS = 250_000_000L;
+	private static final int FRAME_TIMES_KEPT = 600;
+	private static final long BUCKET_NANOS = 100_000L;
+	private static final int BUCKET_COUNT = 1000;
+	private static final double CYCLES_PER_SECOND = 1 << 20;
+
+	private final EmulationLoop emulation;
+	private final FrameTimeHistogram frameTimes = new FrameTimeHistogram(FRAME_TIMES_KEPT, BUCKET_NANOS,
+			BUCKET_COUNT);
+	private final Text text = new Text();
+	private long previousFrame, displayNanos;
+	private long previousUpdate, previousCycles, previousFrames, previousEmulationNanos, previousConversionNanos,
+			previousDisplayNanos;
+
+	/**
+	 * constructs a hidden overlay for the given emulation.
+	 * 
+	 * @param emulation
+	 * @throws NullPointerException
+	 *             if the emulation is null.
+	 */
+	public PerformanceOverlay(EmulationLoop emulation) throws NullPointerException {
+		this.emulation = Objects.requireNonNull(emulation);
+		text.setFont(Font.font("Monospaced", 11));
+		text.setFill(Color.LIME);
+		text.setMouseTransparent(true);
+		text.setVisible(false);
+	}
+
+	/**
+	 * @return the node of the overlay, to be put over the screen.
+	 */
+	public Node node() {
+		return text;
+	}
+
+	/**
+	 * shows the overlay if it is hidden, hides it otherwise.
+	 */
+	public void toggle() {
+		text.setVisible(!text.isVisible());
+	}
+
+	/**
+	 * records that a frame was displayed.
+	 * 
+	 * @param now
+	 *            the time at which it was displayed, in nanoseconds.
+	 * @param nanos
+	 *            the time taken to display it, in nanoseconds.
+	 */
+	public void frameDisplayed(long now, long nanos) {
+		if (previousFrame != 0)
+			frameTimes.record(now - previousFrame);
+		previousFrame = now;
+		displayNanos += nanos;
+	}
+
+	/**
+	 * updates the text if it is shown and wasn't updated for a while.
+	 * 
+	 * @param now
+	 *            the current time, in nanoseconds.
+	 */
+	public void update(long now) {
+		long elapsed = now - previousUpdate;
+		if (!text.isVisible() || elapsed < UPDATE_NANOS)
+			return;
+
+		long cycles = emulation.cycles(), frames = emulation.frames();
+		long emulationNanos = emulation.emulationNanos(), conversionNanos = emulation.conversionNanos();
+		if (previousUpdate != 0) {
+			double seconds = elapsed / 1e9;
+			text.setText(String.format(
+					"speed      %6.1f %%%n" + "lcd frames %6.1f /s%n" + "emulation  %6.1f ms/s%n"
+							+ "conversion %6.1f ms/s%n" + "display    %6.1f ms/s%n"
+							+ "frame time p50 %.1f  p99 %.1f  max %.1f ms",
+					100 * (cycles - previousCycles) / (CYCLES_PER_SECOND * seconds),
+					(frames - previousFrames) / seconds, (emulationNanos - previousEmulationNanos) / 1e6 / seconds,
+					(conversionNanos - previousConversionNanos) / 1e6 / seconds,
+					(displayNanos - previousDisplayNanos) / 1e6 / seconds, frameTimes.percentileNanos(50) / 1e6,
+					frameTimes.percentileNanos(99) / 1e6, frameTimes.maxNanos() / 1e6));
+		}
+		previousUpdate = now;
+		previousCycles = cycles;
+		previousFrames = frames;
+		previousEmulationNanos = emulationNanos;
+		previousConversionNanos = conversionNanos;
+		previousDisplayNanos = displayNanos;
+	}
+
+}
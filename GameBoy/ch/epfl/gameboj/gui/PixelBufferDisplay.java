@@ -0,0 +1,107 @@
+package ch.epfl.gameboj.gui;
+
+import java.nio.IntBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.util.Callback;
+
+/**
+ * a javafx image showing LcdImages without copying them into a new image: the
+ * image is backed by a PixelBuffer wrapping an array of pixels, in which each
+ * LcdImage is written, scaled up by an upscaler, before the image is told that
+ * its pixels changed. It must only be used from the javafx application thread.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class PixelBufferDisplay {
+
+	private final int width, height;
+	private final Upscaler upscaler;
+	private final int[] frame, pixels;
+	private final PixelBuffer<IntBuffer> buffer;
+	private final WritableImage image;
+	private final Callback<PixelBuffer<IntBuffer>, Rectangle2D> wholeImageChanged;
+
+	/**
+	 * constructs a display of the given size, initially transparent.
+	 * 
+	 * @param width
+	 * @param height
+	 * @throws IllegalArgumentException
+	 *             if the width or the height isn't strictly positive.
+	 */
+	public PixelBufferDisplay(int width, int height) throws IllegalArgumentException {
+		this(width, height, Upscaler.nearest(1));
+	}
+
+	/**
+	 * constructs a display of images of the given size, scaled up by the given
+	 * upscaler, initially transparent.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param upscaler
+	 * @throws IllegalArgumentException
+	 *             if the width or the height isn't strictly positive.
+	 * @throws NullPointerException
+	 *             if the upscaler is null.
+	 */
+	public PixelBufferDisplay(int width, int height, Upscaler upscaler)
+			throws IllegalArgumentException, NullPointerException {
+		Preconditions.checkArgument(width > 0 && height > 0);
+		this.width = width;
+		this.height = height;
+		this.upscaler = Objects.requireNonNull(upscaler);
+		frame = new int[width * height];
+		int scaledWidth = width * upscaler.factor(), scaledHeight = height * upscaler.factor();
+		pixels = new int[scaledWidth * scaledHeight];
+		// the colors are opaque, so their premultiplied form is the same
+		buffer = new PixelBuffer<>(scaledWidth, scaledHeight, IntBuffer.wrap(pixels),
+				PixelFormat.getIntArgbPreInstance());
+		image = new WritableImage(buffer);
+		Rectangle2D wholeImage = new Rectangle2D(0, 0, scaledWidth, scaledHeight);
+		wholeImageChanged = b -> wholeImage;
+	}
+
+	/**
+	 * @return the javafx image, to be shown by an ImageView, as big as the images
+	 *         shown scaled up.
+	 */
+	public Image image() {
+		return image;
+	}
+
+	/**
+	 * shows the given image.
+	 * 
+	 * @param lcdImage
+	 * @throws IllegalArgumentException
+	 *             if the image isn't of the size of the display.
+	 */
+	public void show(LcdImage lcdImage) throws IllegalArgumentException {
+		Preconditions.checkArgument(lcdImage.width() == width && lcdImage.height() == height);
+		lcdImage.copyArgb(frame);
+		show(frame);
+	}
+
+	/**
+	 * shows the given ARGB pixels, line by line.
+	 * 
+	 * @param argb
+	 * @throws IllegalArgumentException
+	 *             if there isn't exactly one pixel per pixel of the display.
+	 */
+	public void show(int[] argb) throws IllegalArgumentException {
+		upscaler.scale(argb, width, height, pixels);
+		buffer.updateBuffer(wholeImageChanged);
+	}
+
+}
@@ -0,0 +1,73 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * three buffers exchanged without locks between a thread producing frames and
+ * a thread consuming them. The producer fills its back buffer and publishes it,
+ * the consumer takes the latest published buffer: neither ever waits for the
+ * other, and a frame published while the consumer didn't take the previous one
+ * replaces it.
+ *
+ * @param <T>
+ *            the type of the buffers.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class TripleBuffer<T> {
+
+	private static final int INDEX_MASK = 0b11, FRESH = 0b100;
+
+	private final Object[] buffers = new Object[3];
+	// the index of the buffer between the two threads, with FRESH if it was
+	// published since the consumer last took it
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0, front = 2;
+
+	/**
+	 * constructs a triple buffer.
+	 * 
+	 * @param factory
+	 *            called three times to create the buffers.
+	 * @throws NullPointerException
+	 *             if the factory or one of the buffers it creates is null.
+	 */
+	public TripleBuffer(Supplier<T> factory) throws NullPointerException {
+		for (int i = 0; i < buffers.length; ++i)
+			buffers[i] = Objects.requireNonNull(factory.get());
+	}
+
+	/**
+	 * @return the buffer to fill before publishing it. Must only be called by the
+	 *         producer.
+	 */
+	@SuppressWarnings("unchecked")
+	public T back() {
+		return (T) buffers[back];
+	}
+
+	/**
+	 * publishes the back buffer, a new one taking its place. Must only be called
+	 * by the producer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * returns the latest buffer published, or null if none was published since
+	 * the last call. The buffer returned stays untouched by the producer until
+	 * the next call. Must only be called by the consumer.
+	 */
+	@SuppressWarnings("unchecked")
+	public T takeLatest() {
+		if ((middle.get() & FRESH) == 0)
+			return null;
+		front = middle.getAndSet(front) & INDEX_MASK;
+		return (T) buffers[front];
+	}
+
+}
@@ -0,0 +1,82 @@
+package ch.epfl.gameboj.gui;
+
+/**
+ * scales an image up by an integer factor, between the frames of the LCD and
+ * the display. The images are arrays of ARGB pixels, line by line, the
+ * destination being allocated once by the caller and reused for every frame.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public interface Upscaler {
+
+	/**
+	 * @return the factor by which the width and the height are multiplied.
+	 */
+	int factor();
+
+	/**
+	 * writes the scaled source image into the destination.
+	 * 
+	 * @param source
+	 *            the pixels of the source image.
+	 * @param width
+	 *            the width of the source image.
+	 * @param height
+	 *            the height of the source image.
+	 * @param destination
+	 *            the pixels of the scaled image, factor times wider and higher.
+	 * @throws IllegalArgumentException
+	 *             if the size of the source or of the destination doesn't match
+	 *             the given width and height.
+	 */
+	void scale(int[] source, int width, int height, int[] destination) throws IllegalArgumentException;
+
+	/**
+	 * returns an upscaler repeating each pixel into a square of the given side.
+	 * 
+	 * @param factor
+	 * @throws IllegalArgumentException
+	 *             if the factor isn't strictly positive.
+	 */
+	static Upscaler nearest(int factor) throws IllegalArgumentException {
+		return new Upscalers.Nearest(factor);
+	}
+
+	/**
+	 * @return the Scale2x upscaler, doubling the size while rounding the
+	 *         diagonal edges.
+	 */
+	static Upscaler scale2x() {
+		return new Upscalers.Scale2x();
+	}
+
+	/**
+	 * @return the Scale3x upscaler, tripling the size while rounding the
+	 *         diagonal edges.
+	 */
+	static Upscaler scale3x() {
+		return new Upscalers.Scale3x();
+	}
+
+	/**
+	 * @return the Scale4x upscaler, applying Scale2x twice.
+	 */
+	static Upscaler scale4x() {
+		return new Upscalers.Scale4x();
+	}
+
+	/**
+	 * @return the xBR upscaler, limited to the 3x3 neighbourhood of each pixel,
+	 *         doubling the size: each corner of a pixel takes the mean of its
+	 *         color and of the closest of the two neighbours next to the corner
+	 *         if the colors of these neighbours are closer along their diagonal
+	 *         than those of the pixel and of its neighbour in the corner across
+	 *         it. It uses the Vector API when BitVector does, see
+	 *         {@link ch.epfl.gameboj.bits.BitVector#vectorized()}.
+	 */
+	static Upscaler xbr2x() {
+		return Upscalers.xbr2x();
+	}
+
+}
@@ -0,0 +1,256 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.BitVector;
+
+/**
+ * the implementations of the upscalers. In each of them, the pixel E is
+ * scaled knowing its neighbours, the pixels outside of the image being the
+ * nearest ones inside of it:
+ * 
+ * <pre>
+ * A B C
+ * D E F
+ * G H I
+ * </pre>
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class Upscalers {
+
+	// the xBR upscaler using the Vector API, compiled apart as BitVector's
+	// vector operations
+	private static final String VECTOR_XBR2X = "ch.epfl.gameboj.gui.VectorXbr2x";
+
+	private Upscalers() {
+	}
+
+	static Upscaler xbr2x() {
+		if (BitVector.vectorized()) {
+			try {
+				return (Upscaler) Class.forName(VECTOR_XBR2X).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not compiled with the vector operations
+			}
+		}
+		return new Xbr2x();
+	}
+
+	static void checkSizes(int[] source, int width, int height, int[] destination, int factor) {
+		Preconditions.checkArgument(width > 0 && height > 0 && source.length == width * height
+				&& destination.length == source.length * factor * factor);
+	}
+
+	static final class Nearest implements Upscaler {
+		private final int factor;
+
+		Nearest(int factor) {
+			Preconditions.checkArgument(factor > 0);
+			this.factor = factor;
+		}
+
+		@Override
+		public int factor() {
+			return factor;
+		}
+
+		@Override
+		public void scale(int[] source, int width, int height, int[] destination) {
+			checkSizes(source, width, height, destination, factor);
+			int scaledWidth = width * factor;
+			for (int y = 0; y < height; ++y) {
+				int line = y * factor * scaledWidth;
+				for (int x = 0, d = line; x < width; ++x, d += factor) {
+					int color = source[y * width + x];
+					for (int i = 0; i < factor; ++i)
+						destination[d + i] = color;
+				}
+				for (int i = 1; i < factor; ++i)
+					System.arraycopy(destination, line, destination, line + i * scaledWidth, scaledWidth);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "nearest " + factor + "x";
+		}
+	}
+
+	static final class Scale2x implements Upscaler {
+		@Override
+		public int factor() {
+			return 2;
+		}
+
+		@Override
+		public void scale(int[] source, int width, int height, int[] destination) {
+			checkSizes(source, width, height, destination, 2);
+			scale2x(source, width, height, destination);
+		}
+
+		@Override
+		public String toString() {
+			return "Scale2x";
+		}
+	}
+
+	static final class Xbr2x implements Upscaler {
+		@Override
+		public int factor() {
+			return 2;
+		}
+
+		@Override
+		public void scale(int[] source, int width, int height, int[] destination) {
+			checkSizes(source, width, height, destination, 2);
+			for (int y = 0; y < height; ++y)
+				for (int x = 0; x < width; ++x)
+					xbr2x(source, width, height, x, y, destination);
+		}
+
+		@Override
+		public String toString() {
+			return "xBR 2x";
+		}
+	}
+
+	static final class Scale4x implements Upscaler {
+		private int[] doubled = new int[0];
+
+		@Override
+		public int factor() {
+			return 4;
+		}
+
+		@Override
+		public void scale(int[] source, int width, int height, int[] destination) {
+			checkSizes(source, width, height, destination, 4);
+			if (doubled.length != source.length * 4)
+				doubled = new int[source.length * 4];
+			scale2x(source, width, height, doubled);
+			scale2x(doubled, 2 * width, 2 * height, destination);
+		}
+
+		@Override
+		public String toString() {
+			return "Scale4x";
+		}
+	}
+
+	static final class Scale3x implements Upscaler {
+		@Override
+		public int factor() {
+			return 3;
+		}
+
+		@Override
+		public void scale(int[] source, int width, int height, int[] destination) {
+			checkSizes(source, width, height, destination, 3);
+			int scaledWidth = 3 * width;
+			for (int y = 0; y < height; ++y) {
+				int up = Math.max(y - 1, 0) * width, line = y * width, down = Math.min(y + 1, height - 1) * width;
+				for (int x = 0; x < width; ++x) {
+					int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+					int a = source[up + left], b = source[up + x], c = source[up + right];
+					int d = source[line + left], e = source[line + x], f = source[line + right];
+					int g = source[down + left], h = source[down + x], i = source[down + right];
+					int o = 3 * y * scaledWidth + 3 * x;
+					if (b != h && d != f) {
+						destination[o] = d == b ? d : e;
+						destination[o + 1] = (d == b && e != c) || (b == f && e != a) ? b : e;
+						destination[o + 2] = b == f ? f : e;
+						o += scaledWidth;
+						destination[o] = (d == b && e != g) || (d == h && e != a) ? d : e;
+						destination[o + 1] = e;
+						destination[o + 2] = (b == f && e != i) || (h == f && e != c) ? f : e;
+						o += scaledWidth;
+						destination[o] = d == h ? d : e;
+						destination[o + 1] = (d == h && e != i) || (h == f && e != g) ? h : e;
+						destination[o + 2] = h == f ? f : e;
+					} else {
+						for (int k = 0; k < 3; ++k, o += scaledWidth)
+							destination[o] = destination[o + 1] = destination[o + 2] = e;
+					}
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Scale3x";
+		}
+	}
+
+	// Scale2x, the pixels cut by an edge taking the color on its other side
+	private static void scale2x(int[] source, int width, int height, int[] destination) {
+		int scaledWidth = 2 * width;
+		for (int y = 0; y < height; ++y) {
+			int up = Math.max(y - 1, 0) * width, line = y * width, down = Math.min(y + 1, height - 1) * width;
+			for (int x = 0; x < width; ++x) {
+				int b = source[up + x], h = source[down + x];
+				int d = source[line + Math.max(x - 1, 0)], e = source[line + x], f = source[line + Math.min(x + 1, width - 1)];
+				int o = 2 * y * scaledWidth + 2 * x;
+				if (b != h && d != f) {
+					destination[o] = d == b ? d : e;
+					destination[o + 1] = b == f ? f : e;
+					destination[o + scaledWidth] = d == h ? d : e;
+					destination[o + scaledWidth + 1] = h == f ? f : e;
+				} else {
+					destination[o] = destination[o + 1] = destination[o + scaledWidth] = destination[o + scaledWidth + 1] = e;
+				}
+			}
+		}
+	}
+
+	/*
+	 * scales the pixel at the given coordinates by xBR, see Upscaler.xbr2x(),
+	 * also used by the vector upscaler on the borders of the image.
+	 */
+	static void xbr2x(int[] source, int width, int height, int x, int y, int[] destination) {
+		int up = Math.max(y - 1, 0) * width, line = y * width, down = Math.min(y + 1, height - 1) * width;
+		int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+		int a = source[up + left], b = source[up + x], c = source[up + right];
+		int d = source[line + left], e = source[line + x], f = source[line + right];
+		int g = source[down + left], h = source[down + x], i = source[down + right];
+		int scaledWidth = 2 * width, o = 2 * y * scaledWidth + 2 * x;
+		destination[o] = xbrCorner(e, d, b, a, g, c, f, h);
+		destination[o + 1] = xbrCorner(e, b, f, c, a, i, h, d);
+		destination[o + scaledWidth] = xbrCorner(e, d, h, g, a, i, f, b);
+		destination[o + scaledWidth + 1] = xbrCorner(e, f, h, i, c, g, d, b);
+	}
+
+	/*
+	 * returns the color of the corner of e towards k, between the sides s1 and
+	 * s2, whose opposite sides are o1 and o2, c1 and c2 being the two other
+	 * corners: the edge along the diagonal of s1 and s2 is kept if it is sharper
+	 * than the one across it, between e and k.
+	 */
+	private static int xbrCorner(int e, int s1, int s2, int k, int c1, int c2, int o1, int o2) {
+		if (e == s1 || e == s2)
+			return e;
+		int along = distance(e, c1) + distance(e, c2) + 4 * distance(s1, s2);
+		int across = distance(s2, o1) + distance(s1, o2) + 4 * distance(e, k);
+		if (along >= across)
+			return e;
+		return mean(e, distance(e, s1) <= distance(e, s2) ? s1 : s2);
+	}
+
+	/*
+	 * returns the distance of two colors as xBR weights it, computed in the YUV
+	 * space from the differences of their channels.
+	 */
+	private static int distance(int color1, int color2) {
+		int r = ((color1 >>> 16) & 0xFF) - ((color2 >>> 16) & 0xFF);
+		int g = ((color1 >>> 8) & 0xFF) - ((color2 >>> 8) & 0xFF);
+		int b = (color1 & 0xFF) - (color2 & 0xFF);
+		int y = (77 * r + 150 * g + 29 * b) >> 8;
+		return 48 * Math.abs(y) + 7 * Math.abs(b - y) + 6 * Math.abs(r - y);
+	}
+
+	private static int mean(int color1, int color2) {
+		// the mean of each of the four channels, without carries between them
+		return (color1 & color2) + (((color1 ^ color2) & 0xFEFEFEFE) >>> 1);
+	}
+
+}
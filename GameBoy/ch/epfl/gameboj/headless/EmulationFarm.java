@@ -0,0 +1,132 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.RenderPolicy;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * runs batches of jobs on a work-stealing pool of threads, each job emulating
+ * its own GameBoy on one thread. The jobs share nothing but the content of
+ * their rom files, read once per farm, so the throughput grows with the number
+ * of cores.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class EmulationFarm implements AutoCloseable {
+
+	private final ForkJoinPool pool;
+	private final Map<File, byte[]> roms = new ConcurrentHashMap<>();
+
+	/**
+	 * constructs a farm with one thread per available core.
+	 */
+	public EmulationFarm() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * constructs a farm of the given number of threads.
+	 * 
+	 * @param parallelism
+	 * @throws IllegalArgumentException
+	 *             if the number of threads isn't strictly positive.
+	 */
+	public EmulationFarm(int parallelism) throws IllegalArgumentException {
+		Preconditions.checkArgument(parallelism > 0);
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * runs the given jobs, giving each result to the consumer as soon as its job
+	 * completes. The consumer is called by the threads of the farm, possibly
+	 * concurrently.
+	 * 
+	 * @param jobs
+	 * @param results
+	 *            the consumer of the results.
+	 * @return a future completed by the statistics of the batch once all of its
+	 *         results were consumed.
+	 * @throws NullPointerException
+	 *             if one of the arguments or one of the jobs is null.
+	 */
+	public CompletableFuture<FarmStatistics> run(List<FarmJob> jobs, Consumer<? super FarmResult> results)
+			throws NullPointerException {
+		Objects.requireNonNull(results);
+		LongAdder cycles = new LongAdder(), failures = new LongAdder();
+		long start = System.nanoTime();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[jobs.size()];
+		for (int i = 0; i < futures.length; ++i) {
+			FarmJob job = Objects.requireNonNull(jobs.get(i));
+			futures[i] = CompletableFuture.supplyAsync(() -> runJob(job), pool).thenAccept(r -> {
+				cycles.add(r.cycles());
+				if (!r.succeeded())
+					failures.increment();
+				results.accept(r);
+			});
+		}
+		return CompletableFuture.allOf(futures).thenApply(
+				v -> new FarmStatistics(futures.length, failures.sum(), cycles.sum(), System.nanoTime() - start));
+	}
+
+	/**
+	 * stops the threads of the farm, once the jobs submitted are done.
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	private FarmResult runJob(FarmJob job) {
+		long start = System.nanoTime();
+		GameBoy gameBoy = null;
+		try {
+			gameBoy = new GameBoy(Cartridge.ofBytes(rom(job.rom())));
+			LcdController lcd = gameBoy.lcdController();
+			boolean drawLast = !job.outputs().isEmpty();
+			int event = 0;
+			for (long frame = 0; frame < job.frames(); ++frame) {
+				event = job.inputs().applyFrame(gameBoy.joypad(), frame, event);
+				// the last frame is complete if it was drawn during the last two steps
+				lcd.setRenderPolicy(drawLast && frame >= job.frames() - 2 ? RenderPolicy.ALWAYS : RenderPolicy.NEVER);
+				gameBoy.runUntil((frame + 1) * LcdController.CYCLES_PER_FRAME);
+			}
+
+			// the GameBoy isn't used anymore, so its image doesn't change
+			LcdImage image = drawLast ? lcd.currentImage() : null;
+			long hash = job.outputs().contains(FarmJob.Output.HASH) ? FrameExport.hash(image) : 0;
+			return new FarmResult(job, gameBoy.cycles(), System.nanoTime() - start, hash,
+					job.outputs().contains(FarmJob.Output.IMAGE) ? image : null, null);
+		} catch (RuntimeException e) {
+			return new FarmResult(job, gameBoy == null ? 0 : gameBoy.cycles(), System.nanoTime() - start, 0, null,
+					e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : e);
+		}
+	}
+
+	private byte[] rom(File file) {
+		return roms.computeIfAbsent(file, f -> {
+			try {
+				return Files.readAllBytes(f.toPath());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+}
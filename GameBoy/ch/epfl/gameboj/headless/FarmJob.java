@@ -0,0 +1,83 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * a job of an emulation farm: the emulation of a rom during a number of
+ * frames, with the given keys, producing the given outputs about its last
+ * frame. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FarmJob {
+
+	/**
+	 * the outputs a job can produce about its last frame.
+	 */
+	public enum Output {
+		HASH, IMAGE
+	}
+
+	private final String name;
+	private final File rom;
+	private final InputScript inputs;
+	private final long frames;
+	private final Set<Output> outputs;
+
+	/**
+	 * constructs a job.
+	 * 
+	 * @param name
+	 *            the name identifying the job in its results.
+	 * @param rom
+	 *            the rom file.
+	 * @param inputs
+	 *            the keys pressed during the emulation.
+	 * @param frames
+	 *            the number of frames emulated.
+	 * @param outputs
+	 *            the outputs wanted.
+	 * @throws NullPointerException
+	 *             if one of the arguments is null.
+	 * @throws IllegalArgumentException
+	 *             if the number of frames isn't strictly positive.
+	 */
+	public FarmJob(String name, File rom, InputScript inputs, long frames, Set<Output> outputs)
+			throws NullPointerException, IllegalArgumentException {
+		Preconditions.checkArgument(frames > 0);
+		this.name = Objects.requireNonNull(name);
+		this.rom = Objects.requireNonNull(rom);
+		this.inputs = Objects.requireNonNull(inputs);
+		this.frames = frames;
+		this.outputs = outputs.isEmpty() ? Collections.emptySet()
+				: Collections.unmodifiableSet(EnumSet.copyOf(outputs));
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public File rom() {
+		return rom;
+	}
+
+	public InputScript inputs() {
+		return inputs;
+	}
+
+	public long frames() {
+		return frames;
+	}
+
+	public Set<Output> outputs() {
+		return outputs;
+	}
+
+}
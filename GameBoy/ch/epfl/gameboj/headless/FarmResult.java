@@ -0,0 +1,84 @@
+package ch.epfl.gameboj.headless;
+
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * the result of a job of an emulation farm: the outputs of the job, or the
+ * error which stopped it. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FarmResult {
+
+	private final FarmJob job;
+	private final long cycles, nanos, hash;
+	private final LcdImage image;
+	private final Exception error;
+
+	FarmResult(FarmJob job, long cycles, long nanos, long hash, LcdImage image, Exception error) {
+		this.job = Objects.requireNonNull(job);
+		this.cycles = cycles;
+		this.nanos = nanos;
+		this.hash = hash;
+		this.image = image;
+		this.error = error;
+	}
+
+	public FarmJob job() {
+		return job;
+	}
+
+	/**
+	 * @return the number of cycles emulated.
+	 */
+	public long cycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the time taken by the job, in nanoseconds.
+	 */
+	public long nanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return true if the job completed, false if an error stopped it.
+	 */
+	public boolean succeeded() {
+		return error == null;
+	}
+
+	/**
+	 * @return the error which stopped the job, or null if it completed.
+	 */
+	public Exception error() {
+		return error;
+	}
+
+	/**
+	 * @return the hash of the last frame, as given by {@link FrameExport#hash}.
+	 * @throws IllegalStateException
+	 *             if the hash wasn't wanted or if the job failed.
+	 */
+	public long hash() throws IllegalStateException {
+		if (!succeeded() || !job.outputs().contains(FarmJob.Output.HASH))
+			throw new IllegalStateException();
+		return hash;
+	}
+
+	/**
+	 * @return the last frame.
+	 * @throws IllegalStateException
+	 *             if the image wasn't wanted or if the job failed.
+	 */
+	public LcdImage image() throws IllegalStateException {
+		if (image == null)
+			throw new IllegalStateException();
+		return image;
+	}
+
+}
@@ -0,0 +1,72 @@
+package ch.epfl.gameboj.headless;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * the statistics of a batch of jobs run by an emulation farm. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FarmStatistics {
+
+	private final long jobs, failures, cycles, nanos;
+
+	FarmStatistics(long jobs, long failures, long cycles, long nanos) {
+		this.jobs = jobs;
+		this.failures = failures;
+		this.cycles = cycles;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return the number of jobs of the batch.
+	 */
+	public long jobs() {
+		return jobs;
+	}
+
+	/**
+	 * @return the number of jobs stopped by an error.
+	 */
+	public long failures() {
+		return failures;
+	}
+
+	/**
+	 * @return the total number of cycles emulated.
+	 */
+	public long cycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the time taken by the batch, in nanoseconds.
+	 */
+	public long nanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the number of cycles emulated per second, in millions, by all the
+	 *         threads together.
+	 */
+	public double megahertz() {
+		return nanos == 0 ? 0 : cycles * 1e3 / nanos;
+	}
+
+	/**
+	 * @return the number of frames emulated per second by all the threads
+	 *         together.
+	 */
+	public double framesPerSecond() {
+		return nanos == 0 ? 0 : (double) cycles / LcdController.CYCLES_PER_FRAME * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d jobs (%d failed), %d cycles in %.3f s: %.2f MHz, %.1f frames/s", jobs, failures,
+				cycles, nanos / 1e9, megahertz(), framesPerSecond());
+	}
+
+}
@@ -0,0 +1,67 @@
+package ch.epfl.gameboj.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * exports the images of the LCD without javafx: as hashes identifying their
+ * pixels, or as PNG files.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class FrameExport {
+
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L, FNV_PRIME = 0x100000001B3L;
+
+	private FrameExport() {
+	}
+
+	/**
+	 * returns the 64 bits FNV-1a hash of the colors of the pixels of the given
+	 * image, line after line: two images of the same size have the same hash if
+	 * they have the same pixels, and almost surely different hashes otherwise.
+	 * 
+	 * @param image
+	 */
+	public static long hash(LcdImage image) {
+		byte[] colors = new byte[image.width() * image.height()];
+		image.copyColors(colors);
+		long hash = FNV_OFFSET_BASIS;
+		for (byte color : colors)
+			hash = (hash ^ color) * FNV_PRIME;
+		return hash;
+	}
+
+	/**
+	 * returns the given image as an RGB image of java.awt.
+	 * 
+	 * @param image
+	 */
+	public static BufferedImage toBufferedImage(LcdImage image) {
+		int[] argb = new int[image.width() * image.height()];
+		image.copyArgb(argb);
+		BufferedImage bufferedImage = new BufferedImage(image.width(), image.height(), BufferedImage.TYPE_INT_RGB);
+		bufferedImage.setRGB(0, 0, image.width(), image.height(), argb, 0, image.width());
+		return bufferedImage;
+	}
+
+	/**
+	 * writes the given image into the given file, as a PNG.
+	 * 
+	 * @param image
+	 * @param file
+	 * @throws IOException
+	 *             in case of input/output problem.
+	 */
+	public static void writePng(LcdImage image, File file) throws IOException {
+		if (!ImageIO.write(toBufferedImage(image), "png", file))
+			throw new IOException("no PNG writer");
+	}
+
+}
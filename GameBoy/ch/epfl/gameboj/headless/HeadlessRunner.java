@@ -0,0 +1,164 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.RenderPolicy;
+import ch.epfl.gameboj.movie.Movie;
+import ch.epfl.gameboj.movie.MoviePlayer;
+import ch.epfl.gameboj.movie.ParallelReplayer;
+import ch.epfl.gameboj.movie.ReplayReport;
+
+/**
+ * runs a GameBoy without any front end, as fast as possible, and prints the
+ * speed of the emulation. The emulation goes by frames of
+ * {@link LcdController#CYCLES_PER_FRAME} cycles, only the frames selected for
+ * an output being drawn.
+ * 
+ * <pre>
+ * usage: HeadlessRunner rom [-movie file [-verify]] [-frames n | -cycles n] [-every k] [-hash] [-png directory]
+ * </pre>
+ * 
+ * By default, 600 frames are run. With -hash or -png, the last frame, or every
+ * k-th frame with -every, is printed as a hash or written as a PNG file. With
+ * -movie, the movie is played from its start, by default until its end, and the
+ * frames are counted from its start. With -verify, the movie is instead replayed
+ * on all the cores, to check that its keyframes are reproduced.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class HeadlessRunner {
+
+	private static final String USAGE = "usage: HeadlessRunner rom [-movie file [-verify]] [-frames n | -cycles n] [-every k] [-hash] [-png directory]";
+	private static final long DEFAULT_FRAMES = 600;
+
+	private HeadlessRunner() {
+	}
+
+	/**
+	 * runs the rom given as first argument according to the other arguments.
+	 * 
+	 * @param args
+	 * @throws IOException
+	 *             in case of input/output problem.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0)
+			exit(USAGE);
+		File rom = new File(args[0]);
+		long cycles = DEFAULT_FRAMES * LcdController.CYCLES_PER_FRAME;
+		long every = 0;
+		boolean hash = false, lengthGiven = false, verify = false;
+		File pngDirectory = null, movieFile = null;
+		try {
+			for (int i = 1; i < args.length; ++i) {
+				switch (args[i]) {
+				case "-movie":
+					movieFile = new File(args[++i]);
+					break;
+				case "-verify":
+					verify = true;
+					break;
+				case "-frames":
+					cycles = Long.parseLong(args[++i]) * LcdController.CYCLES_PER_FRAME;
+					lengthGiven = true;
+					break;
+				case "-cycles":
+					cycles = Long.parseLong(args[++i]);
+					lengthGiven = true;
+					break;
+				case "-every":
+					every = Long.parseLong(args[++i]);
+					break;
+				case "-hash":
+					hash = true;
+					break;
+				case "-png":
+					pngDirectory = new File(args[++i]);
+					break;
+				default:
+					exit(USAGE);
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			exit(USAGE);
+		}
+		if (pngDirectory != null && !pngDirectory.isDirectory() && !pngDirectory.mkdirs())
+			exit("cannot create " + pngDirectory);
+
+		if (verify && movieFile == null)
+			exit(USAGE);
+
+		Cartridge cartridge = Cartridge.ofFile(rom);
+		GameBoy gameBoy = new GameBoy(cartridge);
+		LcdController lcd = gameBoy.lcdController();
+		MoviePlayer player = null;
+		long base = 0;
+		if (movieFile != null) {
+			try (InputStream in = new BufferedInputStream(new FileInputStream(movieFile))) {
+				player = new MoviePlayer(Movie.read(in), gameBoy);
+			} catch (IllegalArgumentException e) {
+				exit("the movie wasn't recorded with this rom and version");
+			}
+			if (verify) {
+				try (ParallelReplayer replayer = new ParallelReplayer()) {
+					ReplayReport report = replayer.verify(cartridge, player.movie()).join();
+					System.out.println(report);
+					if (!report.succeeded())
+						System.exit(1);
+				}
+				return;
+			}
+			base = player.movie().startCycle();
+			if (!lengthGiven)
+				cycles = player.movie().endCycle() - base;
+		}
+		if (cycles <= 0 || every < 0)
+			exit(USAGE);
+		boolean output = hash || pngDirectory != null;
+		long frames = (cycles + LcdController.CYCLES_PER_FRAME - 1) / LcdController.CYCLES_PER_FRAME;
+
+		long start = System.nanoTime();
+		for (long frame = 1; frame <= frames; ++frame) {
+			// a frame is complete at the end of a step if it was drawn during it and
+			// the previous one
+			boolean selected = output && isSelected(frame, frames, every);
+			boolean nextSelected = output && frame < frames && isSelected(frame + 1, frames, every);
+			lcd.setRenderPolicy(selected || nextSelected ? RenderPolicy.ALWAYS : RenderPolicy.NEVER);
+			long target = base + Math.min(frame * LcdController.CYCLES_PER_FRAME, cycles);
+			if (player != null)
+				player.runUntil(target);
+			else
+				gameBoy.runUntil(target);
+
+			if (selected) {
+				if (hash)
+					System.out.printf("frame %d %016x%n", frame, FrameExport.hash(lcd.currentImage()));
+				if (pngDirectory != null)
+					FrameExport.writePng(lcd.currentImage(),
+							new File(pngDirectory, String.format("frame-%06d.png", frame)));
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d cycles, %d frames in %.3f s: %.2f MHz, %.1f frames/s (%d LCD frames)%n", cycles, frames,
+				seconds, cycles / seconds / 1e6, frames / seconds, lcd.frames());
+	}
+
+	private static boolean isSelected(long frame, long frames, long every) {
+		return every == 0 ? frame == frames : frame % every == 0;
+	}
+
+	private static void exit(String message) {
+		System.err.println(message);
+		System.exit(1);
+	}
+
+}
@@ -0,0 +1,132 @@
+package ch.epfl.gameboj.headless;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * the keys pressed and released during an emulation, each at the beginning of
+ * a given frame of {@link ch.epfl.gameboj.component.lcd.LcdController#CYCLES_PER_FRAME}
+ * cycles, frame 0 beginning at cycle 0. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class InputScript {
+
+	/**
+	 * the script without any key.
+	 */
+	public static final InputScript EMPTY = new Builder().build();
+
+	private final long[] frames;
+	// the index of the key * 2, plus 1 if it is pressed
+	private final int[] events;
+
+	private InputScript(long[] frames, int[] events) {
+		this.frames = frames;
+		this.events = events;
+	}
+
+	/**
+	 * @return the number of keys pressed or released.
+	 */
+	public int size() {
+		return events.length;
+	}
+
+	/**
+	 * returns the frame of the given event.
+	 * 
+	 * @param index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is invalid.
+	 */
+	public long frame(int index) throws IndexOutOfBoundsException {
+		return frames[Objects.checkIndex(index, frames.length)];
+	}
+
+	/**
+	 * applies to the joypad the events of the given frame, in order, starting at
+	 * the given event.
+	 * 
+	 * @param joypad
+	 * @param frame
+	 * @param from
+	 *            the first event which may be of the frame.
+	 * @return the index of the first event after the frame.
+	 */
+	public int applyFrame(Joypad joypad, long frame, int from) {
+		int i = from;
+		for (; i < events.length && frames[i] <= frame; ++i) {
+			if (frames[i] < frame)
+				continue;
+			Key key = Key.values()[events[i] / 2];
+			if (events[i] % 2 == 1)
+				joypad.keyPressed(key);
+			else
+				joypad.keyReleased(key);
+		}
+		return i;
+	}
+
+	/**
+	 * a builder of input scripts, the events being added in order of frames.
+	 */
+	public static final class Builder {
+		private long[] frames = new long[8];
+		private int[] events = new int[8];
+		private int size;
+
+		/**
+		 * adds the pressing of the given key at the given frame.
+		 * 
+		 * @param frame
+		 * @param key
+		 * @return the builder.
+		 * @throws IllegalArgumentException
+		 *             if the frame is negative or before the one of the previous
+		 *             event.
+		 */
+		public Builder press(long frame, Key key) throws IllegalArgumentException {
+			return add(frame, key, true);
+		}
+
+		/**
+		 * adds the release of the given key at the given frame.
+		 * 
+		 * @param frame
+		 * @param key
+		 * @return the builder.
+		 * @throws IllegalArgumentException
+		 *             if the frame is negative or before the one of the previous
+		 *             event.
+		 */
+		public Builder release(long frame, Key key) throws IllegalArgumentException {
+			return add(frame, key, false);
+		}
+
+		/**
+		 * @return the input script.
+		 */
+		public InputScript build() {
+			return new InputScript(Arrays.copyOf(frames, size), Arrays.copyOf(events, size));
+		}
+
+		private Builder add(long frame, Key key, boolean pressed) {
+			Preconditions.checkArgument(frame >= 0 && (size == 0 || frame >= frames[size - 1]));
+			if (size == events.length) {
+				frames = Arrays.copyOf(frames, 2 * size);
+				events = Arrays.copyOf(events, 2 * size);
+			}
+			frames[size] = frame;
+			events[size] = key.ordinal() * 2 + (pressed ? 1 : 0);
+			++size;
+			return this;
+		}
+	}
+
+}
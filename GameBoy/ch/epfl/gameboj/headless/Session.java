@@ -0,0 +1,192 @@
+package ch.epfl.gameboj.headless;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * a session of a session scheduler, emulating a GameBoy on the threads of the
+ * scheduler when frames are asked. Its methods can be called from any thread.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class Session {
+
+	private static final class Request {
+		final long deadline, start;
+		final CompletableFuture<Session> done = new CompletableFuture<>();
+		int remainingFrames;
+
+		Request(int frames, long deadline, long start) {
+			this.remainingFrames = frames;
+			this.deadline = deadline;
+			this.start = start;
+		}
+	}
+
+	private final SessionScheduler scheduler;
+	private final GameBoy gameBoy;
+	private final int priority;
+	private final Queue<Request> requests = new ArrayDeque<>();
+	private boolean ready, closed;
+	private long readySince;
+	// only changed while the session isn't in the queue of the scheduler
+	private volatile long key, readyNumber;
+	private long frames, slices, completedRequests, lateRequests, totalLagNanos, maxLagNanos, maxWaitNanos;
+
+	Session(SessionScheduler scheduler, GameBoy gameBoy, int priority) {
+		this.scheduler = scheduler;
+		this.gameBoy = Objects.requireNonNull(gameBoy);
+		this.priority = priority;
+	}
+
+	/**
+	 * @return the GameBoy emulated.
+	 */
+	public GameBoy gameBoy() {
+		return gameBoy;
+	}
+
+	/**
+	 * @return the priority of the session.
+	 */
+	public int priority() {
+		return priority;
+	}
+
+	/**
+	 * asks the scheduler to emulate the given number of frames, after those
+	 * already asked.
+	 * 
+	 * @param frameCount
+	 *            the number of frames.
+	 * @param deadline
+	 *            the time, as given by System.nanoTime(), before which the frames
+	 *            should be emulated.
+	 * @return a future completed by this session once the frames are emulated,
+	 *         cancelled if the session is closed before, or completed
+	 *         exceptionally by the exception thrown by the emulation, which then
+	 *         closes the session.
+	 * @throws IllegalArgumentException
+	 *             if the number of frames isn't strictly positive.
+	 */
+	public CompletableFuture<Session> advance(int frameCount, long deadline) throws IllegalArgumentException {
+		Preconditions.checkArgument(frameCount > 0);
+		long now = System.nanoTime();
+		Request request = new Request(frameCount, deadline, now);
+		boolean becameReady = false;
+		synchronized (this) {
+			if (closed) {
+				request.done.cancel(false);
+				return request.done;
+			}
+			requests.add(request);
+			if (!ready) {
+				ready = becameReady = true;
+				prepareReady(now);
+			}
+		}
+		if (becameReady)
+			scheduler.makeReady(this);
+		return request.done;
+	}
+
+	/**
+	 * closes the session, cancelling the frames asked and not emulated yet.
+	 */
+	public void close() {
+		for (Request request : closeRequests())
+			request.done.cancel(false);
+		scheduler.closed(this);
+	}
+
+	/**
+	 * @return the current metrics of the session.
+	 */
+	public synchronized SessionMetrics metrics() {
+		int pending = 0;
+		for (Request request : requests)
+			pending += request.remainingFrames;
+		long oldestLag = requests.isEmpty() ? 0 : Math.max(0, System.nanoTime() - requests.peek().deadline);
+		return new SessionMetrics(frames, slices, pending, completedRequests, lateRequests,
+				completedRequests == 0 ? 0 : totalLagNanos / completedRequests, maxLagNanos, oldestLag, maxWaitNanos);
+	}
+
+	long key() {
+		return key;
+	}
+
+	long readyNumber() {
+		return readyNumber;
+	}
+
+	// runs a slice of the oldest request, returning true if the session is still
+	// ready
+	boolean runSlice() {
+		Request request;
+		int count;
+		synchronized (this) {
+			request = requests.peek();
+			if (request == null) {
+				ready = false;
+				return false;
+			}
+			count = Math.min(scheduler.sliceFrames(), request.remainingFrames);
+			maxWaitNanos = Math.max(maxWaitNanos, System.nanoTime() - readySince);
+		}
+
+		gameBoy.runFrames(count);
+
+		boolean completed, stillReady;
+		synchronized (this) {
+			long now = System.nanoTime();
+			frames += count;
+			++slices;
+			request.remainingFrames -= count;
+			completed = request.remainingFrames == 0 && requests.peek() == request;
+			if (completed) {
+				requests.poll();
+				++completedRequests;
+				long lag = Math.max(0, now - request.deadline);
+				if (lag > 0)
+					++lateRequests;
+				totalLagNanos += lag;
+				maxLagNanos = Math.max(maxLagNanos, lag);
+			}
+			stillReady = ready = !requests.isEmpty();
+			if (stillReady)
+				prepareReady(now);
+		}
+		if (completed)
+			request.done.complete(this);
+		return stillReady;
+	}
+
+	// closes the session after its emulation threw the given exception, which
+	// completes the requests not emulated yet
+	void fail(Throwable error) {
+		for (Request request : closeRequests())
+			request.done.completeExceptionally(error);
+		scheduler.closed(this);
+	}
+
+	private synchronized Request[] closeRequests() {
+		closed = true;
+		ready = false;
+		Request[] pending = requests.toArray(new Request[0]);
+		requests.clear();
+		return pending;
+	}
+
+	private void prepareReady(long now) {
+		readySince = now;
+		key = scheduler.key(now, requests.peek().deadline, priority);
+		readyNumber = scheduler.nextReadyNumber();
+	}
+
+}
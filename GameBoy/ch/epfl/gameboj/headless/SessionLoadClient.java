@@ -0,0 +1,118 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * a client loading a session server with many connections, to measure its
+ * throughput and its latency. Each thread of the client opens its share of the
+ * connections and, at each round, sends a random key and the request of one
+ * frame's hash on each of them before reading the replies.
+ * 
+ * <pre>
+ * usage: SessionLoadClient port connections rounds [threads]
+ * </pre>
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class SessionLoadClient {
+
+	private SessionLoadClient() {
+	}
+
+	/**
+	 * loads the server of the given port as given by the arguments and prints the
+	 * throughput and the latencies of its replies.
+	 * 
+	 * @param args
+	 * @throws Exception
+	 *             if a connection fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3 || args.length > 4) {
+			System.err.println("usage: SessionLoadClient port connections rounds [threads]");
+			System.exit(1);
+		}
+		int port = Integer.parseInt(args[0]), connections = Integer.parseInt(args[1]),
+				rounds = Integer.parseInt(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<long[]>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; ++t) {
+			int count = connections / threads + (t < connections % threads ? 1 : 0);
+			long seed = t;
+			futures.add(executor.submit(() -> load(port, count, rounds, seed)));
+		}
+		long[] latencies = new long[0];
+		for (Future<long[]> future : futures) {
+			long[] l = future.get();
+			latencies = Arrays.copyOf(latencies, latencies.length + l.length);
+			System.arraycopy(l, 0, latencies, latencies.length - l.length, l.length);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		executor.shutdown();
+
+		Arrays.sort(latencies);
+		System.out.printf("%d connections, %d replies in %.3f s: %.1f replies/s%n", connections, latencies.length,
+				seconds, latencies.length / seconds);
+		if (latencies.length > 0)
+			System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+					latencies[(latencies.length - 1) / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6,
+					latencies[latencies.length - 1] / 1e6);
+	}
+
+	// returns the latencies of the replies
+	private static long[] load(int port, int count, int rounds, long seed) throws IOException {
+		Random random = new Random(seed);
+		Socket[] sockets = new Socket[count];
+		DataOutputStream[] outs = new DataOutputStream[count];
+		DataInputStream[] ins = new DataInputStream[count];
+		long[] latencies = new long[count * rounds];
+		try {
+			for (int i = 0; i < count; ++i) {
+				sockets[i] = new Socket(InetAddress.getLoopbackAddress(), port);
+				sockets[i].setTcpNoDelay(true);
+				outs[i] = new DataOutputStream(sockets[i].getOutputStream());
+				ins[i] = new DataInputStream(sockets[i].getInputStream());
+			}
+			long[] sent = new long[count];
+			for (int r = 0; r < rounds; ++r) {
+				for (int i = 0; i < count; ++i) {
+					outs[i].writeByte(SessionServer.KEY);
+					outs[i].writeByte(random.nextInt(Key.values().length));
+					outs[i].writeByte(random.nextInt(2));
+					outs[i].writeByte(SessionServer.ADVANCE);
+					outs[i].writeInt(1);
+					outs[i].writeByte(SessionServer.HASH);
+					outs[i].flush();
+					sent[i] = System.nanoTime();
+				}
+				for (int i = 0; i < count; ++i) {
+					ins[i].readLong();
+					latencies[r * count + i] = System.nanoTime() - sent[i];
+				}
+			}
+		} finally {
+			for (Socket socket : sockets)
+				if (socket != null)
+					socket.close();
+		}
+		return latencies;
+	}
+
+}
@@ -0,0 +1,102 @@
+package ch.epfl.gameboj.headless;
+
+/**
+ * the metrics of a session of a session scheduler, at a given time. The lag of
+ * a request is the time by which it missed its deadline, or 0 if it was on
+ * time. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class SessionMetrics {
+
+	private final long frames, slices, pendingFrames, completedRequests, lateRequests, meanLagNanos, maxLagNanos,
+			currentLagNanos, maxWaitNanos;
+
+	SessionMetrics(long frames, long slices, long pendingFrames, long completedRequests, long lateRequests,
+			long meanLagNanos, long maxLagNanos, long currentLagNanos, long maxWaitNanos) {
+		this.frames = frames;
+		this.slices = slices;
+		this.pendingFrames = pendingFrames;
+		this.completedRequests = completedRequests;
+		this.lateRequests = lateRequests;
+		this.meanLagNanos = meanLagNanos;
+		this.maxLagNanos = maxLagNanos;
+		this.currentLagNanos = currentLagNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+	/**
+	 * @return the number of frames emulated.
+	 */
+	public long frames() {
+		return frames;
+	}
+
+	/**
+	 * @return the number of slices run.
+	 */
+	public long slices() {
+		return slices;
+	}
+
+	/**
+	 * @return the number of frames asked and not emulated yet.
+	 */
+	public long pendingFrames() {
+		return pendingFrames;
+	}
+
+	/**
+	 * @return the number of requests completed.
+	 */
+	public long completedRequests() {
+		return completedRequests;
+	}
+
+	/**
+	 * @return the number of requests completed after their deadline.
+	 */
+	public long lateRequests() {
+		return lateRequests;
+	}
+
+	/**
+	 * @return the mean lag of the requests completed, in nanoseconds.
+	 */
+	public long meanLagNanos() {
+		return meanLagNanos;
+	}
+
+	/**
+	 * @return the maximal lag of the requests completed, in nanoseconds.
+	 */
+	public long maxLagNanos() {
+		return maxLagNanos;
+	}
+
+	/**
+	 * @return the time since the deadline of the oldest request not completed,
+	 *         in nanoseconds, or 0 if there is none or if it isn't late.
+	 */
+	public long currentLagNanos() {
+		return currentLagNanos;
+	}
+
+	/**
+	 * @return the maximal time the session waited for a thread while ready, in
+	 *         nanoseconds.
+	 */
+	public long maxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d frames in %d slices, %d pending, %d requests (%d late), lag mean %.1f max %.1f current %.1f ms, max wait %.1f ms",
+				frames, slices, pendingFrames, completedRequests, lateRequests, meanLagNanos / 1e6, maxLagNanos / 1e6,
+				currentLagNanos / 1e6, maxWaitNanos / 1e6);
+	}
+
+}
@@ -0,0 +1,155 @@
+package ch.epfl.gameboj.headless;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * multiplexes many long-lived sessions, each emulating a GameBoy, over a fixed
+ * number of threads. A session asks for frames when it needs them, and the
+ * threads run the sessions having frames to emulate by slices of a few frames,
+ * each slice ending at the beginning of a VBlank.
+ * <p>
+ * The session run next is the one of smallest key, computed each time it
+ * becomes ready: the deadline of its oldest request, advanced by its priority,
+ * but never later than the time it became ready plus the maximal wait, nor
+ * earlier than that time. So urgent and prioritized sessions go first, while a
+ * ready session is never overtaken by sessions becoming ready more than the
+ * maximal wait after it.
+ * <p>
+ * A session whose emulation throws an exception is closed, its requests being
+ * completed exceptionally by it, and the threads go on with the other ones.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class SessionScheduler implements AutoCloseable {
+
+	private final int sliceFrames;
+	private final long maxWaitNanos, priorityNanos;
+	private final AtomicLong readyCount = new AtomicLong();
+	private final PriorityBlockingQueue<Session> ready = new PriorityBlockingQueue<>(64,
+			Comparator.comparingLong(Session::key).thenComparingLong(Session::readyNumber));
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+	private final List<Thread> threads = new ArrayList<>();
+
+	/**
+	 * constructs a scheduler and starts its threads.
+	 * 
+	 * @param threadCount
+	 *            the number of threads running the sessions.
+	 * @param sliceFrames
+	 *            the maximal number of frames emulated by a session before the
+	 *            next one is chosen.
+	 * @param maxWaitNanos
+	 *            the maximal wait of a ready session, in nanoseconds.
+	 * @param priorityNanos
+	 *            the time by which each level of priority advances the deadlines
+	 *            of a session, in nanoseconds.
+	 * @throws IllegalArgumentException
+	 *             if the number of threads, the number of frames or the maximal
+	 *             wait isn't strictly positive, or if the time of a level of
+	 *             priority is negative.
+	 */
+	public SessionScheduler(int threadCount, int sliceFrames, long maxWaitNanos, long priorityNanos)
+			throws IllegalArgumentException {
+		Preconditions.checkArgument(threadCount > 0 && sliceFrames > 0 && maxWaitNanos > 0 && priorityNanos >= 0);
+		this.sliceFrames = sliceFrames;
+		this.maxWaitNanos = maxWaitNanos;
+		this.priorityNanos = priorityNanos;
+		for (int i = 0; i < threadCount; ++i) {
+			Thread thread = new Thread(this::work, "GameBoy session scheduler " + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * opens a session emulating the given GameBoy, which mustn't be used
+	 * elsewhere while the session has frames to emulate, except to post keys to
+	 * its joypad.
+	 * 
+	 * @param gameBoy
+	 * @param priority
+	 *            the priority of the session, 0 being the lowest.
+	 * @return the session.
+	 * @throws NullPointerException
+	 *             if the GameBoy is null.
+	 * @throws IllegalArgumentException
+	 *             if the priority is negative.
+	 */
+	public Session open(GameBoy gameBoy, int priority) throws NullPointerException, IllegalArgumentException {
+		Preconditions.checkArgument(priority >= 0);
+		Session session = new Session(this, gameBoy, priority);
+		sessions.add(session);
+		return session;
+	}
+
+	/**
+	 * @return the sessions open.
+	 */
+	public List<Session> sessions() {
+		return new ArrayList<>(sessions);
+	}
+
+	/**
+	 * stops the threads of the scheduler. The frames asked but not emulated yet
+	 * are never emulated.
+	 */
+	@Override
+	public void close() {
+		for (Thread thread : threads)
+			thread.interrupt();
+	}
+
+	int sliceFrames() {
+		return sliceFrames;
+	}
+
+	// the key of a session becoming ready now, its oldest request having the
+	// given deadline
+	long key(long now, long deadline, int priority) {
+		return Math.max(now, Math.min(deadline - priority * priorityNanos, now + maxWaitNanos));
+	}
+
+	long nextReadyNumber() {
+		return readyCount.getAndIncrement();
+	}
+
+	void makeReady(Session session) {
+		ready.add(session);
+	}
+
+	void closed(Session session) {
+		sessions.remove(session);
+	}
+
+	private void work() {
+		try {
+			while (true) {
+				Session session = ready.take();
+				boolean stillReady;
+				try {
+					stillReady = session.runSlice();
+				} catch (Throwable t) {
+					// the emulation of the session failed, not the thread
+					session.fail(t);
+					continue;
+				}
+				if (stillReady)
+					ready.add(session);
+			}
+		} catch (InterruptedException e) {
+			// the scheduler is closed
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.RenderPolicy;
+
+/**
+ * a server of GameBoy sessions over loopback TCP: each connection gets its own
+ * GameBoy, whose cartridge is a fork of the one of the server, and whose frames
+ * are emulated by a session scheduler. All the connections are handled by a
+ * single thread using non-blocking sockets, so an idle connection costs no
+ * thread, only its GameBoy and its buffers.
+ * <p>
+ * The client sends messages, each starting with its type:
+ * <ul>
+ * <li>{@link #KEY}, followed by the index of a key and 1 if it is pressed, 0 if
+ * it is released, each as a byte;</li>
+ * <li>{@link #ADVANCE}, followed by the number of frames to emulate, as an int,
+ * and the reply wanted, {@link #HASH} or {@link #FRAME}, as a byte.</li>
+ * </ul>
+ * Once the frames of an ADVANCE are emulated, the server replies with the
+ * digest of the state of the GameBoy as a long, given by
+ * {@link GameBoy#stateDigest()}, or with the colors of the pixels of the
+ * current image, line after line, as bytes. The frames are only drawn for the
+ * latter, the last two of the ADVANCE being drawn, so a session only asking
+ * for digests draws none. The messages following an ADVANCE are read once its
+ * reply is sent.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class SessionServer implements AutoCloseable {
+
+	public static final byte KEY = 1, ADVANCE = 2;
+	public static final byte HASH = 0, FRAME = 1;
+	public static final int FRAME_BYTES = LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT;
+	public static final int MAX_FRAMES_PER_ADVANCE = 3600;
+
+	private static final long FRAME_NANOS = LcdController.CYCLES_PER_FRAME * 1_000_000_000L / (1 << 20);
+	private static final int KEY_BYTES = 3, ADVANCE_BYTES = 6;
+	// the last frames of an ADVANCE drawn for a FRAME reply, for the image to be
+	// complete
+	private static final int DRAWN_FRAMES = 2;
+
+	private final Cartridge cartridge;
+	private final SessionScheduler scheduler;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final int port;
+	private final Queue<Connection> replies = new ConcurrentLinkedQueue<>();
+	private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+	private final Thread thread;
+	// the problem which stopped the server, if any
+	private volatile IOException failure;
+
+	/**
+	 * constructs a server and starts its thread.
+	 * 
+	 * @param rom
+	 *            the content of the rom file emulated by each connection.
+	 * @param scheduler
+	 *            the scheduler emulating the frames.
+	 * @param port
+	 *            the port of the server, on the loopback interface, or 0 for any
+	 *            free port.
+	 * @throws IOException
+	 *             in case of input/output problem.
+	 * @throws NullPointerException
+	 *             if the rom or the scheduler is null.
+	 */
+	public SessionServer(byte[] rom, SessionScheduler scheduler, int port) throws IOException, NullPointerException {
+		cartridge = Cartridge.ofBytes(rom); // only forked, by the thread of the server
+		this.scheduler = Objects.requireNonNull(scheduler);
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+		thread = new Thread(this::serve, "GameBoy session server");
+		thread.start();
+	}
+
+	/**
+	 * runs a server until the process is stopped.
+	 * 
+	 * <pre>
+	 * usage: SessionServer rom [port [threads]]
+	 * </pre>
+	 * 
+	 * @param args
+	 * @throws IOException
+	 *             in case of input/output problem.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("usage: SessionServer rom [port [threads]]");
+			System.exit(1);
+		}
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		SessionScheduler scheduler = new SessionScheduler(threads, 1, 100_000_000L, 10_000_000L);
+		SessionServer server = new SessionServer(Files.readAllBytes(new File(args[0]).toPath()), scheduler, port);
+		System.out.println("listening on port " + server.port());
+	}
+
+	/**
+	 * @return the port of the server.
+	 */
+	public int port() {
+		return port;
+	}
+
+	/**
+	 * @return the number of connections open.
+	 */
+	public int connections() {
+		return connections.size();
+	}
+
+	/**
+	 * closes the server and all of its connections.
+	 * 
+	 * @throws IOException
+	 *             if the server had already stopped because of an input/output
+	 *             problem, which is the one thrown.
+	 */
+	@Override
+	public void close() throws IOException {
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	private void serve() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				selector.select();
+				Connection replied;
+				while ((replied = replies.poll()) != null)
+					replied.replyReady();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable())
+						accept();
+					else if (key.isReadable())
+						((Connection) key.attachment()).readable();
+					else if (key.isWritable())
+						((Connection) key.attachment()).writable();
+				}
+			}
+		} catch (IOException e) {
+			// the connections are closed, and the problem thrown by close()
+			failure = e;
+			System.err.println("session server stopped: " + e);
+		} finally {
+			for (Connection connection : connections)
+				connection.close();
+			try {
+				selector.close();
+				server.close();
+			} catch (IOException e) {
+				// nothing more to do with the server
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			new Connection(channel);
+		}
+	}
+
+	private final class Connection {
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final Session session;
+		private final ByteBuffer in = ByteBuffer.allocate(64);
+		private final ByteBuffer hashReply = ByteBuffer.allocate(Long.BYTES);
+		private ByteBuffer frameReply, out;
+		private boolean waiting;
+
+		Connection(SocketChannel channel) throws IOException {
+			this.channel = channel;
+			GameBoy gameBoy = new GameBoy(cartridge.fork());
+			gameBoy.lcdController().setRenderPolicy(RenderPolicy.NEVER);
+			session = scheduler.open(gameBoy, 0);
+			key = channel.register(selector, SelectionKey.OP_READ, this);
+			connections.add(this);
+		}
+
+		void readable() {
+			try {
+				if (channel.read(in) < 0)
+					close();
+				else
+					parse();
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		void writable() {
+			try {
+				channel.write(out);
+				if (!out.hasRemaining()) {
+					out = null;
+					waiting = false;
+					key.interestOps(SelectionKey.OP_READ);
+					parse();
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		// called by the thread of the server once the reply is ready, or once the
+		// frames failed to be emulated, the connection being then closed
+		void replyReady() {
+			if (out == null)
+				close();
+			else if (key.isValid()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+				writable();
+			}
+		}
+
+		void close() {
+			if (!key.isValid())
+				return;
+			key.cancel();
+			session.close();
+			connections.remove(this);
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing more to do with the connection
+			}
+		}
+
+		private void parse() {
+			in.flip();
+			while (!waiting && in.hasRemaining()) {
+				byte type = in.get(in.position());
+				if (type == KEY && in.remaining() >= KEY_BYTES) {
+					in.get();
+					int index = in.get(), pressed = in.get();
+					if (index < 0 || index >= Key.values().length || (pressed != 0 && pressed != 1)) {
+						close();
+						return;
+					}
+					if (pressed == 1)
+						session.gameBoy().joypad().postKeyPressed(Key.values()[index]);
+					else
+						session.gameBoy().joypad().postKeyReleased(Key.values()[index]);
+				} else if (type == ADVANCE && in.remaining() >= ADVANCE_BYTES) {
+					in.get();
+					int frames = in.getInt(), reply = in.get();
+					if (frames <= 0 || frames > MAX_FRAMES_PER_ADVANCE || (reply != HASH && reply != FRAME)) {
+						close();
+						return;
+					}
+					advance(frames, reply == FRAME);
+				} else if (type != KEY && type != ADVANCE) {
+					close();
+					return;
+				} else {
+					break;
+				}
+			}
+			in.compact();
+		}
+
+		private void advance(int frames, boolean wholeFrame) {
+			waiting = true;
+			key.interestOps(0);
+			long deadline = System.nanoTime() + frames * FRAME_NANOS;
+			CompletableFuture<Session> done;
+			if (!wholeFrame)
+				done = session.advance(frames, deadline);
+			else if (frames > DRAWN_FRAMES)
+				done = session.advance(frames - DRAWN_FRAMES, deadline).thenCompose(s -> draw(s, DRAWN_FRAMES, deadline));
+			else
+				done = draw(session, frames, deadline);
+			done.whenComplete((s, error) -> {
+				if (error != null) {
+					out = null;
+					replies.add(this);
+					selector.wakeup();
+					return;
+				}
+				// the session has no other frames to emulate, so its state is stable
+				LcdController lcd = s.gameBoy().lcdController();
+				if (wholeFrame) {
+					lcd.setRenderPolicy(RenderPolicy.NEVER);
+					if (frameReply == null)
+						frameReply = ByteBuffer.allocate(FRAME_BYTES);
+					lcd.currentImage().copyColors(frameReply.array());
+					frameReply.clear();
+					out = frameReply;
+				} else {
+					hashReply.clear();
+					hashReply.putLong(0, s.gameBoy().stateDigest());
+					out = hashReply;
+				}
+				replies.add(this);
+				selector.wakeup();
+			});
+		}
+
+		// emulates the given number of frames of the given session, drawing them
+		private CompletableFuture<Session> draw(Session session, int frames, long deadline) {
+			session.gameBoy().lcdController().setRenderPolicy(RenderPolicy.ALWAYS);
+			return session.advance(frames, deadline);
+		}
+	}
+
+}
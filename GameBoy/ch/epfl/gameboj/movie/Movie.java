@@ -0,0 +1,259 @@
+package ch.epfl.gameboj.movie;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * the keys pressed and released during an emulation, each at the cycle before
+ * which it changed, with the saved states of the GameBoy at some cycles, its
+ * keyframes. The first keyframe is the state the movie starts from. It's
+ * immutable, and is written as a compressed binary file.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class Movie {
+
+	private static final int MAGIC = 0x47424A4D; // "GBJM"
+	private static final int VERSION = 1;
+
+	private final long romCrc, endCycle;
+	private final long[] eventCycles;
+	// the index of the key * 2, plus 1 if it is pressed
+	private final int[] events;
+	private final long[] keyframeCycles;
+	// the index of the first event not included in each keyframe
+	private final int[] keyframeEvents;
+	private final byte[][] keyframes;
+
+	Movie(long romCrc, long endCycle, long[] eventCycles, int[] events, long[] keyframeCycles, int[] keyframeEvents,
+			byte[][] keyframes) {
+		this.romCrc = romCrc;
+		this.endCycle = endCycle;
+		this.eventCycles = eventCycles;
+		this.events = events;
+		this.keyframeCycles = keyframeCycles;
+		this.keyframeEvents = keyframeEvents;
+		this.keyframes = keyframes;
+	}
+
+	/**
+	 * @return the CRC-32 of the rom of the cartridge the movie was recorded with.
+	 */
+	public long romCrc() {
+		return romCrc;
+	}
+
+	/**
+	 * @return the cycle of the first keyframe, at which the movie starts.
+	 */
+	public long startCycle() {
+		return keyframeCycles[0];
+	}
+
+	/**
+	 * @return the cycle at which the movie ends.
+	 */
+	public long endCycle() {
+		return endCycle;
+	}
+
+	/**
+	 * @return the number of keys pressed or released.
+	 */
+	public int eventCount() {
+		return events.length;
+	}
+
+	/**
+	 * returns the cycle before which the given event happens.
+	 *
+	 * @param index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is invalid.
+	 */
+	public long eventCycle(int index) throws IndexOutOfBoundsException {
+		return eventCycles[Objects.checkIndex(index, events.length)];
+	}
+
+	/**
+	 * returns the key of the given event.
+	 *
+	 * @param index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is invalid.
+	 */
+	public Key eventKey(int index) throws IndexOutOfBoundsException {
+		return Key.values()[events[Objects.checkIndex(index, events.length)] / 2];
+	}
+
+	/**
+	 * returns whether the key of the given event is pressed or released.
+	 *
+	 * @param index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is invalid.
+	 */
+	public boolean eventPressed(int index) throws IndexOutOfBoundsException {
+		return events[Objects.checkIndex(index, events.length)] % 2 == 1;
+	}
+
+	/**
+	 * @return the number of keyframes, at least one.
+	 */
+	public int keyframeCount() {
+		return keyframes.length;
+	}
+
+	/**
+	 * returns the cycle at which the given keyframe was saved.
+	 *
+	 * @param index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is invalid.
+	 */
+	public long keyframeCycle(int index) throws IndexOutOfBoundsException {
+		return keyframeCycles[Objects.checkIndex(index, keyframes.length)];
+	}
+
+	/**
+	 * writes the movie to the given stream, which is not closed.
+	 *
+	 * @param out
+	 * @throws IOException
+	 *             in case of input/output problem.
+	 */
+	public void write(OutputStream out) throws IOException {
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		DataOutputStream data = new DataOutputStream(deflater);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(romCrc);
+		data.writeLong(endCycle);
+		data.writeInt(events.length);
+		long previous = startCycle();
+		for (int i = 0; i < events.length; ++i) {
+			writeVarLong(data, eventCycles[i] - previous);
+			data.writeByte(events[i]);
+			previous = eventCycles[i];
+		}
+		data.writeInt(keyframes.length);
+		for (int i = 0; i < keyframes.length; ++i) {
+			data.writeLong(keyframeCycles[i]);
+			data.writeInt(keyframeEvents[i]);
+			data.writeInt(keyframes[i].length);
+			data.write(keyframes[i]);
+		}
+		data.flush();
+		deflater.finish();
+	}
+
+	/**
+	 * reads a movie written by {@link #write(OutputStream)} from the given
+	 * stream, which is not closed.
+	 *
+	 * @param in
+	 * @return the movie.
+	 * @throws IOException
+	 *             in case of input/output problem, including if the stream
+	 *             doesn't contain a valid movie.
+	 */
+	public static Movie read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new InflaterInputStream(in));
+		if (data.readInt() != MAGIC || data.readInt() != VERSION)
+			throw new IOException("Not a movie of this version");
+		long romCrc = data.readLong();
+		long endCycle = data.readLong();
+		int eventCount = data.readInt();
+		long[] eventCycles = new long[checkCount(eventCount)];
+		int[] events = new int[eventCount];
+		long cycle = 0;
+		for (int i = 0; i < eventCount; ++i) {
+			cycle += readVarLong(data);
+			eventCycles[i] = cycle;
+			events[i] = data.readUnsignedByte();
+			if (events[i] >= 2 * Key.values().length)
+				throw new IOException("Invalid key");
+		}
+		int keyframeCount = data.readInt();
+		if (keyframeCount < 1)
+			throw new IOException("No keyframe");
+		long[] keyframeCycles = new long[checkCount(keyframeCount)];
+		int[] keyframeEvents = new int[keyframeCount];
+		byte[][] keyframes = new byte[keyframeCount][];
+		for (int i = 0; i < keyframeCount; ++i) {
+			keyframeCycles[i] = data.readLong();
+			keyframeEvents[i] = data.readInt();
+			keyframes[i] = new byte[checkCount(data.readInt())];
+			data.readFully(keyframes[i]);
+			if (keyframeEvents[i] < 0 || keyframeEvents[i] > eventCount
+					|| (i > 0 && keyframeCycles[i] < keyframeCycles[i - 1]))
+				throw new IOException("Invalid keyframe");
+		}
+		// the event cycles are relative to the start of the movie
+		for (int i = 0; i < eventCount; ++i)
+			eventCycles[i] += keyframeCycles[0];
+		return new Movie(romCrc, endCycle, eventCycles, events, keyframeCycles, keyframeEvents, keyframes);
+	}
+
+	/*
+	 * returns the index of the last keyframe saved at or before the given cycle,
+	 * or 0 if there is none.
+	 */
+	int keyframeAt(long cycle) {
+		int i = Arrays.binarySearch(keyframeCycles, cycle);
+		if (i < 0)
+			i = -i - 2;
+		// the last of the keyframes saved at the same cycle
+		while (i + 1 < keyframeCycles.length && keyframeCycles[i + 1] == cycle)
+			++i;
+		return Math.max(i, 0);
+	}
+
+	byte[] keyframe(int index) {
+		return keyframes[index];
+	}
+
+	int keyframeEvent(int index) {
+		return keyframeEvents[index];
+	}
+
+	int event(int index) {
+		return events[index];
+	}
+
+	private static int checkCount(int count) throws IOException {
+		if (count < 0)
+			throw new IOException("Invalid count");
+		return count;
+	}
+
+	private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			data.writeByte((int) (value | 0x80));
+			value >>>= 7;
+		}
+		data.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream data) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			int b = data.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b < 0x80)
+				return value;
+		}
+		throw new IOException("Invalid number");
+	}
+
+}
@@ -0,0 +1,150 @@
+package ch.epfl.gameboj.movie;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * plays a movie on a GameBoy of the cartridge it was recorded with: the
+ * GameBoy is restored to a keyframe, then emulated with the keys of the movie
+ * changing exactly at their cycles, so it goes through the same states as
+ * during the recording. After the end of the movie, the GameBoy can be
+ * emulated further without any key changing.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class MoviePlayer {
+
+	private final Movie movie;
+	private final GameBoy gameBoy;
+	private int nextEvent;
+
+	/**
+	 * constructs a player of the given movie, restoring the GameBoy to its
+	 * start.
+	 *
+	 * @param movie
+	 * @param gameBoy
+	 * @throws NullPointerException
+	 *             if one of the arguments is null.
+	 * @throws IllegalArgumentException
+	 *             if the movie wasn't recorded with the rom of the GameBoy, or if
+	 *             its keyframes can't be loaded by it.
+	 */
+	public MoviePlayer(Movie movie, GameBoy gameBoy) throws NullPointerException, IllegalArgumentException {
+		this(movie, gameBoy, 0);
+	}
+
+	/*
+	 * constructs a player of the given movie, restoring the GameBoy to the given
+	 * keyframe.
+	 */
+	MoviePlayer(Movie movie, GameBoy gameBoy, int keyframe) {
+		this.movie = Objects.requireNonNull(movie);
+		this.gameBoy = Objects.requireNonNull(gameBoy);
+		Preconditions.checkArgument(movie.romCrc() == gameBoy.cartridge().romCrc());
+		restore(keyframe);
+	}
+
+	/**
+	 * @return the movie played.
+	 */
+	public Movie movie() {
+		return movie;
+	}
+
+	/**
+	 * @return the GameBoy the movie is played on.
+	 */
+	public GameBoy gameBoy() {
+		return gameBoy;
+	}
+
+	/**
+	 * @return whether the GameBoy reached the end of the movie.
+	 */
+	public boolean finished() {
+		return gameBoy.cycles() >= movie.endCycle();
+	}
+
+	/**
+	 * emulates the GameBoy up to the given cycle, minus one, changing the keys
+	 * of the movie before their cycles.
+	 *
+	 * @param cycle
+	 * @throws IllegalArgumentException
+	 *             if the cycle is before the current one of the GameBoy.
+	 */
+	public void runUntil(long cycle) throws IllegalArgumentException {
+		Preconditions.checkArgument(cycle >= gameBoy.cycles());
+		while (nextEvent < movie.eventCount() && movie.eventCycle(nextEvent) < cycle) {
+			gameBoy.runUntil(movie.eventCycle(nextEvent));
+			applyNextEvent();
+		}
+		gameBoy.runUntil(cycle);
+	}
+
+	/**
+	 * brings the GameBoy to the given cycle, forwards or backwards, by restoring
+	 * the last keyframe before it and replaying the movie from there.
+	 *
+	 * @param cycle
+	 *            a cycle at or after the start of the movie.
+	 * @throws IllegalArgumentException
+	 *             if the cycle is before the start of the movie.
+	 */
+	public void seek(long cycle) throws IllegalArgumentException {
+		Preconditions.checkArgument(cycle >= movie.startCycle());
+		int keyframe = movie.keyframeAt(cycle);
+		// going forwards, the keyframe is only useful if it is ahead
+		if (cycle < gameBoy.cycles() || movie.keyframeCycle(keyframe) > gameBoy.cycles())
+			restore(keyframe);
+		runUntil(cycle);
+	}
+
+	/**
+	 * brings the GameBoy to the beginning of the given frame of the movie, the
+	 * frames being of {@link LcdController#CYCLES_PER_FRAME} cycles from its
+	 * start.
+	 *
+	 * @param frame
+	 * @throws IllegalArgumentException
+	 *             if the frame is negative.
+	 */
+	public void seekFrame(long frame) throws IllegalArgumentException {
+		Preconditions.checkArgument(frame >= 0);
+		seek(movie.startCycle() + frame * LcdController.CYCLES_PER_FRAME);
+	}
+
+	private void restore(int keyframe) {
+		gameBoy.loadState(ByteBuffer.wrap(movie.keyframe(keyframe)));
+		nextEvent = movie.keyframeEvent(keyframe);
+	}
+
+	/*
+	 * emulates the GameBoy up to the given keyframe, which must not be behind it,
+	 * so that it is in the state saved in the keyframe if the replay is faithful.
+	 */
+	void runToKeyframe(int keyframe) {
+		runUntil(movie.keyframeCycle(keyframe));
+		// the events at the cycle of the keyframe which were recorded before it
+		while (nextEvent < movie.keyframeEvent(keyframe))
+			applyNextEvent();
+	}
+
+	private void applyNextEvent() {
+		int event = movie.event(nextEvent);
+		Key key = Key.values()[event / 2];
+		if (event % 2 == 1)
+			gameBoy.joypad().keyPressed(key);
+		else
+			gameBoy.joypad().keyReleased(key);
+		++nextEvent;
+	}
+
+}
@@ -0,0 +1,119 @@
+package ch.epfl.gameboj.movie;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * records a movie of a GameBoy from the moment it is constructed: the keys of
+ * its joypad changing, whether pressed directly or posted, at the cycle of the
+ * change, and keyframes at regular intervals. All its methods must be called
+ * by the thread emulating the GameBoy.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class MovieRecorder implements Joypad.KeyListener {
+
+	private final GameBoy gameBoy;
+	private final long keyframeInterval;
+	private long[] eventCycles = new long[64];
+	private int[] events = new int[64];
+	private int eventCount;
+	private long[] keyframeCycles = new long[8];
+	private int[] keyframeEvents = new int[8];
+	private byte[][] keyframes = new byte[8][];
+	private int keyframeCount;
+	private boolean finished;
+
+	/**
+	 * starts recording a movie of the given GameBoy, from its current state.
+	 *
+	 * @param gameBoy
+	 * @param keyframeInterval
+	 *            the minimal number of cycles between two keyframes.
+	 * @throws NullPointerException
+	 *             if the GameBoy is null.
+	 * @throws IllegalArgumentException
+	 *             if the interval isn't strictly positive.
+	 */
+	public MovieRecorder(GameBoy gameBoy, long keyframeInterval)
+			throws NullPointerException, IllegalArgumentException {
+		this.gameBoy = Objects.requireNonNull(gameBoy);
+		Preconditions.checkArgument(keyframeInterval > 0);
+		this.keyframeInterval = keyframeInterval;
+		addKeyframe();
+		gameBoy.joypad().setKeyListener(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.component.Joypad.KeyListener#keyChanged(ch.epfl.gameboj.
+	 * component.Joypad.Key, boolean)
+	 */
+	@Override
+	public void keyChanged(Key key, boolean pressed) {
+		if (eventCount == events.length) {
+			eventCycles = Arrays.copyOf(eventCycles, 2 * eventCount);
+			events = Arrays.copyOf(events, 2 * eventCount);
+		}
+		eventCycles[eventCount] = gameBoy.cycles();
+		events[eventCount] = key.ordinal() * 2 + (pressed ? 1 : 0);
+		++eventCount;
+	}
+
+	/**
+	 * saves a keyframe if the interval elapsed since the previous one, to be
+	 * called regularly, typically after each frame.
+	 *
+	 * @throws IllegalStateException
+	 *             if the recording is finished.
+	 */
+	public void update() throws IllegalStateException {
+		checkRecording();
+		if (gameBoy.cycles() - keyframeCycles[keyframeCount - 1] >= keyframeInterval)
+			addKeyframe();
+	}
+
+	/**
+	 * ends the recording at the current cycle of the GameBoy.
+	 *
+	 * @return the movie.
+	 * @throws IllegalStateException
+	 *             if the recording is already finished.
+	 */
+	public Movie finish() throws IllegalStateException {
+		checkRecording();
+		finished = true;
+		gameBoy.joypad().setKeyListener(null);
+		return new Movie(gameBoy.cartridge().romCrc(), gameBoy.cycles(), Arrays.copyOf(eventCycles, eventCount),
+				Arrays.copyOf(events, eventCount), Arrays.copyOf(keyframeCycles, keyframeCount),
+				Arrays.copyOf(keyframeEvents, keyframeCount), Arrays.copyOf(keyframes, keyframeCount));
+	}
+
+	private void addKeyframe() {
+		if (keyframeCount == keyframes.length) {
+			keyframeCycles = Arrays.copyOf(keyframeCycles, 2 * keyframeCount);
+			keyframeEvents = Arrays.copyOf(keyframeEvents, 2 * keyframeCount);
+			keyframes = Arrays.copyOf(keyframes, 2 * keyframeCount);
+		}
+		ByteBuffer state = ByteBuffer.allocate(gameBoy.stateSize());
+		gameBoy.saveState(state);
+		keyframeCycles[keyframeCount] = gameBoy.cycles();
+		keyframeEvents[keyframeCount] = eventCount;
+		keyframes[keyframeCount] = state.array();
+		++keyframeCount;
+	}
+
+	private void checkRecording() {
+		if (finished)
+			throw new IllegalStateException("The recording is finished");
+	}
+
+}
@@ -0,0 +1,315 @@
+package ch.epfl.gameboj.movie;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.RenderPolicy;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * replays movies on a work-stealing pool of threads. A movie is split at its
+ * keyframes into segments, each replayed by its own GameBoy from the keyframe
+ * it starts at, and the state of the GameBoys at every keyframe they reach is
+ * compared to the one saved in it, so a replay also verifies that the movie
+ * is reproduced by the emulation. The frames of the segments are given in
+ * order, as if the movie was played from its start.
+ *
+ * The images saved in a keyframe may not be the ones displayed at its cycle
+ * during the replay, as they depend on the frames drawn before. So a segment
+ * goes on a few frames into the next one, whose images are only given from the
+ * first frame at which the outputs of both LCD controllers are the same, from
+ * where they draw the same images. Until then, usually two frames, the former
+ * one gives the images, being replayed further when needed.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class ParallelReplayer implements AutoCloseable {
+
+	// the minimal length of a segment, so that its first frames are negligible
+	private static final long MIN_SEGMENT_CYCLES = 60 * LcdController.CYCLES_PER_FRAME;
+	// the frames replayed by a segment after its end, for the outputs of the
+	// next one to become the same, which takes two frames with all of them drawn
+	private static final long OVERLAP_FRAMES = 3;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * constructs a replayer with one thread per available core.
+	 */
+	public ParallelReplayer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * constructs a replayer of the given number of threads.
+	 *
+	 * @param parallelism
+	 * @throws IllegalArgumentException
+	 *             if the number of threads isn't strictly positive.
+	 */
+	public ParallelReplayer(int parallelism) throws IllegalArgumentException {
+		Preconditions.checkArgument(parallelism > 0);
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * replays the given movie on GameBoys of the given cartridge, giving the
+	 * image at the end of each frame of
+	 * {@link LcdController#CYCLES_PER_FRAME} cycles from the start of the movie,
+	 * the last one being at its end, to the consumer. The consumer is called by
+	 * the threads of the replayer, one frame after the other in order, and may
+	 * keep the images. The cartridge is forked before this returns, and can then
+	 * be used again.
+	 *
+	 * @param cartridge
+	 * @param movie
+	 * @param frames
+	 *            the consumer of the images.
+	 * @return a future completed by the report of the replay once all of its
+	 *         frames were consumed, or exceptionally if the emulation or the
+	 *         consumer failed.
+	 * @throws NullPointerException
+	 *             if one of the arguments is null.
+	 * @throws IllegalArgumentException
+	 *             if the movie wasn't recorded with the rom of the cartridge.
+	 */
+	public CompletableFuture<ReplayReport> replay(Cartridge cartridge, Movie movie, Consumer<? super LcdImage> frames)
+			throws NullPointerException, IllegalArgumentException {
+		return new Replay(cartridge, movie, Objects.requireNonNull(frames)).start();
+	}
+
+	/**
+	 * replays the given movie on GameBoys of the given cartridge without drawing
+	 * any frame, only to compare their states to the keyframes.
+	 *
+	 * @param cartridge
+	 * @param movie
+	 * @return a future completed by the report of the replay, or exceptionally if
+	 *         the emulation failed.
+	 * @throws NullPointerException
+	 *             if one of the arguments is null.
+	 * @throws IllegalArgumentException
+	 *             if the movie wasn't recorded with the rom of the cartridge.
+	 * @see #replay(Cartridge, Movie, Consumer)
+	 */
+	public CompletableFuture<ReplayReport> verify(Cartridge cartridge, Movie movie)
+			throws NullPointerException, IllegalArgumentException {
+		return new Replay(cartridge, movie, null).start();
+	}
+
+	/**
+	 * stops the threads of the replayer, once the segments already submitted are
+	 * replayed. The replays which still have segments to submit complete
+	 * exceptionally.
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	// the replay of a segment: the images and the output digests of its frames,
+	// from its first one, and the player, at the last of them
+	private static final class Segment {
+		private final MoviePlayer player;
+		private final long first, end;
+		private final List<LcdImage> images = new ArrayList<>();
+		private final List<Long> digests = new ArrayList<>();
+		private int keyframes, mismatches;
+		private long cycles;
+
+		Segment(MoviePlayer player, long first, long end) {
+			this.player = player;
+			this.first = first;
+			this.end = end;
+		}
+
+		void add() {
+			LcdController lcd = player.gameBoy().lcdController();
+			images.add(lcd.currentImage().copy());
+			digests.add(lcd.outputDigest());
+		}
+	}
+
+	private final class Replay {
+		private final Movie movie;
+		private final Consumer<? super LcdImage> frames;
+		private final Cartridge[] cartridges;
+		// the keyframe at which each segment starts
+		private final int[] starts;
+		private final long frameCount;
+		// the segments replayed but not consumed yet
+		private final Segment[] done;
+		private final int window = 2 * pool.getParallelism();
+		private final CompletableFuture<ReplayReport> result = new CompletableFuture<>();
+		private final long startNanos = System.nanoTime();
+		private int submitted, consumed, keyframes, mismatches;
+		private long cycles;
+		// the last segment whose images are the ones of the movie
+		private Segment source;
+
+		Replay(Cartridge cartridge, Movie movie, Consumer<? super LcdImage> frames) {
+			this.movie = Objects.requireNonNull(movie);
+			this.frames = frames;
+			Preconditions.checkArgument(movie.romCrc() == cartridge.romCrc());
+			frameCount = (movie.endCycle() - movie.startCycle() + LcdController.CYCLES_PER_FRAME - 1)
+					/ LcdController.CYCLES_PER_FRAME;
+
+			int[] starts = new int[movie.keyframeCount()];
+			int count = 1;
+			for (int k = 1; k < movie.keyframeCount(); ++k) {
+				long cycle = movie.keyframeCycle(k);
+				if (cycle < movie.endCycle() && cycle - movie.keyframeCycle(starts[count - 1]) >= MIN_SEGMENT_CYCLES)
+					starts[count++] = k;
+			}
+			this.starts = Arrays.copyOf(starts, count);
+			done = new Segment[count];
+			cartridges = new Cartridge[count];
+			for (int i = 0; i < count; ++i)
+				cartridges[i] = cartridge.fork();
+		}
+
+		CompletableFuture<ReplayReport> start() {
+			synchronized (this) {
+				submit();
+			}
+			return result;
+		}
+
+		private void submit() {
+			while (submitted < done.length && submitted < consumed + window) {
+				int i = submitted++;
+				try {
+					CompletableFuture.supplyAsync(() -> replaySegment(i), pool)
+							.whenComplete((segment, error) -> completed(i, segment, error));
+				} catch (RejectedExecutionException e) {
+					result.completeExceptionally(e);
+					return;
+				}
+			}
+		}
+
+		private synchronized void completed(int i, Segment segment, Throwable error) {
+			if (result.isDone())
+				return;
+			if (error != null) {
+				result.completeExceptionally(error);
+				return;
+			}
+			done[i] = segment;
+			try {
+				while (consumed < done.length && done[consumed] != null) {
+					consume(done[consumed]);
+					done[consumed++] = null;
+				}
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				return;
+			}
+			if (consumed == done.length)
+				result.complete(new ReplayReport(done.length, keyframes, mismatches, frames == null ? 0 : frameCount,
+						cycles, System.nanoTime() - startNanos));
+			else
+				submit();
+		}
+
+		// gives the images of the frames of the given segment, those of the source
+		// until their outputs are the same
+		private void consume(Segment segment) {
+			keyframes += segment.keyframes;
+			mismatches += segment.mismatches;
+			cycles += segment.cycles;
+			if (frames == null)
+				return;
+			long frame = segment.first;
+			if (source != null) {
+				for (; frame < segment.end && digest(source, frame) != digest(segment, frame); ++frame)
+					frames.accept(image(source, frame));
+			}
+			if (frame < segment.end) {
+				for (; frame < segment.end; ++frame)
+					frames.accept(image(segment, frame));
+				source = segment;
+			}
+		}
+
+		private long digest(Segment segment, long frame) {
+			extend(segment, frame);
+			return segment.digests.get((int) (frame - segment.first));
+		}
+
+		private LcdImage image(Segment segment, long frame) {
+			extend(segment, frame);
+			// each image is given once
+			return segment.images.set((int) (frame - segment.first), null);
+		}
+
+		// replays the given segment further, up to the given frame
+		private void extend(Segment segment, long frame) {
+			GameBoy gameBoy = segment.player.gameBoy();
+			long start = gameBoy.cycles();
+			for (long f = segment.first + segment.images.size(); f <= frame; ++f) {
+				segment.player.runUntil(frameCycle(f));
+				segment.add();
+			}
+			cycles += gameBoy.cycles() - start;
+		}
+
+		private Segment replaySegment(int i) {
+			GameBoy gameBoy = new GameBoy(cartridges[i]);
+			LcdController lcd = gameBoy.lcdController();
+			lcd.setRenderPolicy(frames == null ? RenderPolicy.NEVER : RenderPolicy.ALWAYS);
+			MoviePlayer player = new MoviePlayer(movie, gameBoy, starts[i]);
+			long startCycle = gameBoy.cycles();
+			boolean last = i == starts.length - 1;
+			int lastKeyframe = last ? movie.keyframeCount() - 1 : starts[i + 1];
+			Segment segment = new Segment(player, firstFrame(i), last ? frameCount + 1 : firstFrame(i + 1));
+
+			int keyframe = starts[i] + 1;
+			long lastFrame = Math.min(segment.end + OVERLAP_FRAMES - 1, frameCount);
+			for (long frame = segment.first; frames != null && frame <= lastFrame; ++frame) {
+				long cycle = frameCycle(frame);
+				for (; keyframe <= lastKeyframe && movie.keyframeCycle(keyframe) <= cycle; ++keyframe)
+					check(player, keyframe, segment);
+				player.runUntil(cycle);
+				segment.add();
+			}
+			for (; keyframe <= lastKeyframe; ++keyframe)
+				check(player, keyframe, segment);
+			segment.cycles = gameBoy.cycles() - startCycle;
+			return segment;
+		}
+
+		private void check(MoviePlayer player, int keyframe, Segment segment) {
+			GameBoy gameBoy = player.gameBoy();
+			player.runToKeyframe(keyframe);
+			++segment.keyframes;
+			if (gameBoy.stateDigest() != gameBoy.stateDigest(ByteBuffer.wrap(movie.keyframe(keyframe))))
+				++segment.mismatches;
+		}
+
+		// the first frame ending after the start of the given segment, the first
+		// frame of the movie being the frame 1
+		private long firstFrame(int i) {
+			return (movie.keyframeCycle(starts[i]) - movie.startCycle()) / LcdController.CYCLES_PER_FRAME + 1;
+		}
+
+		// the cycle at which the given frame ends
+		private long frameCycle(long frame) {
+			return movie.startCycle()
+					+ Math.min(frame * LcdController.CYCLES_PER_FRAME, movie.endCycle() - movie.startCycle());
+		}
+	}
+
+}
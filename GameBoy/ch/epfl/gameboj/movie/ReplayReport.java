@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.movie;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * the outcome of a parallel replay of a movie. It's immutable.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class ReplayReport {
+
+	private final int segments, keyframes, mismatches;
+	private final long frames, cycles, nanos;
+
+	ReplayReport(int segments, int keyframes, int mismatches, long frames, long cycles, long nanos) {
+		this.segments = segments;
+		this.keyframes = keyframes;
+		this.mismatches = mismatches;
+		this.frames = frames;
+		this.cycles = cycles;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return the number of segments the movie was split into.
+	 */
+	public int segments() {
+		return segments;
+	}
+
+	/**
+	 * @return the number of keyframes reached by the replay and compared to its
+	 *         state.
+	 */
+	public int keyframes() {
+		return keyframes;
+	}
+
+	/**
+	 * @return the number of keyframes whose state wasn't reproduced by the
+	 *         replay.
+	 */
+	public int mismatches() {
+		return mismatches;
+	}
+
+	/**
+	 * @return whether all the keyframes reached were reproduced.
+	 */
+	public boolean succeeded() {
+		return mismatches == 0;
+	}
+
+	/**
+	 * @return the number of frames of the movie, given to the consumer if any.
+	 */
+	public long frames() {
+		return frames;
+	}
+
+	/**
+	 * @return the total number of cycles emulated, including the ones emulated
+	 *         twice at the start of the segments.
+	 */
+	public long cycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the time taken by the replay, in nanoseconds.
+	 */
+	public long nanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the number of frames emulated per second by all the threads
+	 *         together.
+	 */
+	public double framesPerSecond() {
+		return nanos == 0 ? 0 : (double) cycles / LcdController.CYCLES_PER_FRAME * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d segments, %d/%d keyframes reproduced, %d frames, %d cycles in %.3f s: %.1f frames/s",
+				segments, keyframes - mismatches, keyframes, frames, cycles, nanos / 1e9, framesPerSecond());
+	}
+
+}
@@ -0,0 +1,157 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+
+/**
+ * checks on the bundled roms that a state saved in the middle of a frame is
+ * restored exactly, the emulation from it giving the same state again, also
+ * by new GameBoys, with deferred rendering, by forks and after forking. The keys
+ * of the joypad are pressed and released at the start of frames, as a function
+ * of the frame only.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class GameBoyStateTest {
+
+	private static final String[] ROMS = { "Tetris (JUE) (V1.1) [!].gb", "flappyboy.gb",
+			"Super Mario Land (JUE) (V1.1) [!] (1).gb", "tasmaniaStory.gb",
+			"Super Mario Land 2 - 6 Golden Coins (UE) (V1.2) [!].gb" };
+	private static final File ROM_DIRECTORY = new File("GameBoy");
+
+	// the cycle at which the state is saved, in the middle of a frame, and the
+	// number of cycles emulated from it
+	private static final long SAVE_CYCLE = 40 * LcdController.CYCLES_PER_FRAME + LcdController.CYCLES_PER_FRAME / 2
+			+ 37;
+	private static final long RUN_CYCLES = 5 * LcdController.CYCLES_PER_FRAME + 1000;
+
+	@Test
+	void loadStateRestoresTheEmulation() throws IOException {
+		for (String rom : ROMS) {
+			GameBoy gameBoy = runToSave(rom);
+			ByteBuffer state = save(gameBoy);
+			byte[] expected = runAndSave(gameBoy);
+
+			GameBoy restored = newGameBoy(rom);
+			restored.loadState(state.duplicate());
+			assertEquals(SAVE_CYCLE, restored.cycles(), rom);
+			assertArrayEquals(expected, runAndSave(restored), rom);
+
+			gameBoy.loadState(state);
+			assertEquals(SAVE_CYCLE, gameBoy.cycles(), rom + " loaded again");
+			assertArrayEquals(expected, runAndSave(gameBoy), rom + " loaded again");
+		}
+	}
+
+	@Test
+	void deferredRenderingSavesAndRestoresTheSameStates() throws IOException {
+		for (String rom : ROMS) {
+			GameBoy gameBoy = runToSave(rom);
+			ByteBuffer state = save(gameBoy);
+			byte[] expected = runAndSave(gameBoy);
+
+			GameBoy deferred = newGameBoy(rom);
+			deferred.lcdController().setRendering(Rendering.DEFERRED);
+			run(deferred, SAVE_CYCLE);
+			assertArrayEquals(state.array(), save(deferred).array(), rom + " saved");
+			assertArrayEquals(expected, runAndSave(deferred), rom + " run");
+			assertEquals(gameBoy.lcdController().currentImage(), deferred.lcdController().currentImage(), rom);
+
+			deferred.loadState(state);
+			assertArrayEquals(expected, runAndSave(deferred), rom + " loaded");
+		}
+	}
+
+	@Test
+	void forksRunAndLoadStatesLikeTheirParent() throws IOException {
+		for (String rom : ROMS) {
+			GameBoy gameBoy = runToSave(rom);
+			ByteBuffer state = save(gameBoy);
+			GameBoy fork = gameBoy.fork();
+			byte[] expected = runAndSave(gameBoy);
+
+			assertArrayEquals(expected, runAndSave(fork), rom + " fork");
+			fork.loadState(state.duplicate());
+			assertArrayEquals(expected, runAndSave(fork), rom + " fork loaded");
+
+			// both load the state while their memories are still shared
+			gameBoy.loadState(state.duplicate());
+			GameBoy other = gameBoy.fork();
+			other.loadState(state.duplicate());
+			gameBoy.loadState(state.duplicate());
+			assertArrayEquals(expected, runAndSave(gameBoy), rom + " parent loaded after fork");
+			assertArrayEquals(expected, runAndSave(other), rom + " fork loaded while shared");
+		}
+	}
+
+	@Test
+	void copiesRunLikeTheGameBoyCopied() throws IOException {
+		for (String rom : ROMS) {
+			GameBoy gameBoy = runToSave(rom);
+			GameBoy copy = gameBoy.fork();
+			// the copy diverges and then is refreshed several times, as when
+			// running ahead
+			for (int i = 0; i < 3; ++i) {
+				runAndSave(copy);
+				gameBoy.runUntil(gameBoy.cycles() + LcdController.CYCLES_PER_FRAME);
+				copy.copyFrom(gameBoy);
+			}
+			byte[] expected = runAndSave(copy);
+			assertArrayEquals(expected, runAndSave(gameBoy), rom);
+		}
+	}
+
+	private static GameBoy newGameBoy(String rom) throws IOException {
+		return new GameBoy(Cartridge.ofFile(new File(ROM_DIRECTORY, rom)));
+	}
+
+	private static GameBoy runToSave(String rom) throws IOException {
+		GameBoy gameBoy = newGameBoy(rom);
+		run(gameBoy, SAVE_CYCLE);
+		return gameBoy;
+	}
+
+	// runs the given GameBoy until the given cycle, changing the keys pressed at
+	// the start of each frame
+	private static void run(GameBoy gameBoy, long cycle) {
+		while (gameBoy.cycles() < cycle) {
+			long frame = gameBoy.cycles() / LcdController.CYCLES_PER_FRAME;
+			if (gameBoy.cycles() % LcdController.CYCLES_PER_FRAME == 0) {
+				Joypad joypad = gameBoy.joypad();
+				Key key = Key.values()[(int) (frame % Key.values().length)];
+				if (frame % 3 == 0)
+					joypad.keyPressed(key);
+				else
+					joypad.keyReleased(key);
+			}
+			gameBoy.runUntil(Math.min(cycle, (frame + 1) * LcdController.CYCLES_PER_FRAME));
+		}
+	}
+
+	private static ByteBuffer save(GameBoy gameBoy) {
+		ByteBuffer state = ByteBuffer.allocate(gameBoy.stateSize());
+		gameBoy.saveState(state);
+		state.flip();
+		return state;
+	}
+
+	// runs the given GameBoy for RUN_CYCLES cycles, and returns its state
+	private static byte[] runAndSave(GameBoy gameBoy) {
+		run(gameBoy, gameBoy.cycles() + RUN_CYCLES);
+		return save(gameBoy).array();
+	}
+
+}
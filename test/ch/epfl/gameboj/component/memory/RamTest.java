@@ -0,0 +1,109 @@
+package ch.epfl.gameboj.component.memory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * checks that the state of a memory is its content, restored by loadState,
+ * and that memories sharing their pages after copyFrom stay independent, when
+ * written and when loading states.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+public final class RamTest {
+
+    // not a multiple of the size of the pages, so that the last one is partial
+    private static final int SIZE = 1000;
+
+    @Test
+    void saveStateGivesTheContent() {
+        Ram ram = filled(3);
+        byte[] state = state(ram);
+        assertEquals(SIZE, state.length);
+        for (int i = 0; i < SIZE; ++i)
+            assertEquals(ram.read(i), Byte.toUnsignedInt(state[i]));
+    }
+
+    @Test
+    void indicesOutsideOfTheMemoryAreRejected() {
+        // the sizes of the object and high memories, in a partial last page
+        for (int size : new int[] { 160, 127, SIZE, 256 }) {
+            Ram ram = new Ram(size);
+            assertThrows(IndexOutOfBoundsException.class, () -> ram.read(size));
+            assertThrows(IndexOutOfBoundsException.class, () -> ram.write(size, 0x42));
+            assertThrows(IndexOutOfBoundsException.class, () -> ram.read(-1));
+            assertThrows(IndexOutOfBoundsException.class, () -> ram.write(-1, 0x42));
+            ram.write(size - 1, 0x42);
+            assertEquals(0x42, ram.read(size - 1));
+        }
+    }
+
+    @Test
+    void copyFromGivesTheSameContent() {
+        Ram ram = filled(1);
+        Ram copy = new Ram(SIZE);
+        copy.copyFrom(ram);
+        assertArrayEquals(state(ram), state(copy));
+    }
+
+    @Test
+    void writesAfterCopyFromAreNotShared() {
+        Ram ram = filled(1);
+        Ram copy = new Ram(SIZE);
+        copy.copyFrom(ram);
+        byte[] expected = state(ram);
+
+        ram.write(300, 0xAA);
+        assertArrayEquals(expected, state(copy));
+        copy.write(SIZE - 1, 0x55);
+        assertEquals(Byte.toUnsignedInt(expected[SIZE - 1]), ram.read(SIZE - 1));
+    }
+
+    @Test
+    void loadStateAfterCopyFromOnlyChangesTheLoadedRam() {
+        Ram ram = filled(1);
+        byte[] other = state(filled(7));
+        Ram copy = new Ram(SIZE);
+        copy.copyFrom(ram);
+        byte[] expected = state(ram);
+
+        copy.loadState(ByteBuffer.wrap(other));
+        assertArrayEquals(other, state(copy));
+        assertArrayEquals(expected, state(ram));
+
+        ram.loadState(ByteBuffer.wrap(other));
+        copy.loadState(ByteBuffer.wrap(expected));
+        assertArrayEquals(other, state(ram));
+        assertArrayEquals(expected, state(copy));
+    }
+
+    @Test
+    void loadStateRestoresTheSavedContent() {
+        Ram ram = filled(3);
+        byte[] saved = state(ram);
+        for (int i = 0; i < SIZE; i += 7)
+            ram.write(i, 0);
+        ram.loadState(ByteBuffer.wrap(saved));
+        assertArrayEquals(saved, state(ram));
+    }
+
+    private static Ram filled(int step) {
+        Ram ram = new Ram(SIZE);
+        for (int i = 0; i < SIZE; ++i)
+            ram.write(i, (i * step) & 0xFF);
+        return ram;
+    }
+
+    private static byte[] state(Ram ram) {
+        ByteBuffer buffer = ByteBuffer.allocate(ram.stateSize());
+        ram.saveState(buffer);
+        return buffer.array();
+    }
+
+}
@@ -0,0 +1,72 @@
+package ch.epfl.gameboj.bits;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * the word by word operations done by the vector instructions of the processor,
+ * through the incubating Vector API. This class, as the others of the vector
+ * folder, is compiled apart with the classes of the emulator on the class path
+ * by
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp classes -d classes $(find vector -name "*.java")
+ * </pre>
+ *
+ * and it is only used if the emulator runs with the option
+ * {@code --add-modules jdk.incubator.vector}; the scalar operations are used
+ * otherwise, see {@link WordOperations#load()}.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class VectorWordOperations implements WordOperations {
+
+	// lines are 3 to 4 words long, so longer vectors would leave them to the
+	// scalar loop
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_128;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.bits.WordOperations#select(long[], long[], long[],
+	 * long[])
+	 */
+	@Override
+	public void select(long[] mask, long[] a, long[] b, long[] result) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(result.length); i < end; i += SPECIES.length()) {
+			LongVector m = LongVector.fromArray(SPECIES, mask, i);
+			LongVector.fromArray(SPECIES, a, i).and(m)
+					.or(LongVector.fromArray(SPECIES, b, i).lanewise(VectorOperators.AND_NOT, m))
+					.intoArray(result, i);
+		}
+		for (; i < result.length; ++i)
+			result[i] = (a[i] & mask[i]) | (b[i] & ~mask[i]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.bits.WordOperations#lookup(long[], long[], long, long,
+	 * long, long, long[])
+	 */
+	@Override
+	public void lookup(long[] high, long[] low, long t0, long t1, long t2, long t3, long[] result) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(result.length); i < end; i += SPECIES.length()) {
+			LongVector h = LongVector.fromArray(SPECIES, high, i);
+			LongVector l = LongVector.fromArray(SPECIES, low, i);
+			// the words selected by low, then by high
+			LongVector ifHigh = l.and(t3).or(l.lanewise(VectorOperators.NOT).and(t2));
+			LongVector ifLow = l.and(t1).or(l.lanewise(VectorOperators.NOT).and(t0));
+			ifHigh.and(h).or(ifLow.lanewise(VectorOperators.AND_NOT, h)).intoArray(result, i);
+		}
+		for (; i < result.length; ++i) {
+			long h = high[i], l = low[i];
+			result[i] = (h & l & t3) | (h & ~l & t2) | (~h & l & t1) | (~h & ~l & t0);
+		}
+	}
+
+}
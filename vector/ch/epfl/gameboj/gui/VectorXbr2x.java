@@ -0,0 +1,110 @@
+package ch.epfl.gameboj.gui;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * the xBR upscaler of {@link Upscaler#xbr2x()}, scaling the pixels of a line
+ * several at a time through the incubating Vector API. The pixels on the left
+ * and right borders, and those left after the last whole vector, are scaled by
+ * the scalar code. This class is compiled apart, as
+ * ch.epfl.gameboj.bits.VectorWordOperations, and only used when the latter is.
+ *
+ * @author Karim Sabaa (269647)
+ * @author Mohamed Elasfoury (289473)
+ */
+final class VectorXbr2x implements Upscaler {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	// the offsets in the destination of the pixels of a vector, every other one
+	private static final int[] EVEN = new int[SPECIES.length()];
+	static {
+		for (int i = 0; i < EVEN.length; ++i)
+			EVEN[i] = 2 * i;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.gui.Upscaler#factor()
+	 */
+	@Override
+	public int factor() {
+		return 2;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ch.epfl.gameboj.gui.Upscaler#scale(int[], int, int, int[])
+	 */
+	@Override
+	public void scale(int[] source, int width, int height, int[] destination) {
+		Upscalers.checkSizes(source, width, height, destination, 2);
+		int scaledWidth = 2 * width;
+		for (int y = 0; y < height; ++y) {
+			int up = Math.max(y - 1, 0) * width, line = y * width, down = Math.min(y + 1, height - 1) * width;
+			Upscalers.xbr2x(source, width, height, 0, y, destination);
+			int x = 1;
+			for (; x + SPECIES.length() < width; x += SPECIES.length()) {
+				IntVector a = IntVector.fromArray(SPECIES, source, up + x - 1);
+				IntVector b = IntVector.fromArray(SPECIES, source, up + x);
+				IntVector c = IntVector.fromArray(SPECIES, source, up + x + 1);
+				IntVector d = IntVector.fromArray(SPECIES, source, line + x - 1);
+				IntVector e = IntVector.fromArray(SPECIES, source, line + x);
+				IntVector f = IntVector.fromArray(SPECIES, source, line + x + 1);
+				IntVector g = IntVector.fromArray(SPECIES, source, down + x - 1);
+				IntVector h = IntVector.fromArray(SPECIES, source, down + x);
+				IntVector i = IntVector.fromArray(SPECIES, source, down + x + 1);
+				int o = 2 * y * scaledWidth + 2 * x;
+				corner(e, d, b, a, g, c, f, h).intoArray(destination, o, EVEN, 0);
+				corner(e, b, f, c, a, i, h, d).intoArray(destination, o + 1, EVEN, 0);
+				corner(e, d, h, g, a, i, f, b).intoArray(destination, o + scaledWidth, EVEN, 0);
+				corner(e, f, h, i, c, g, d, b).intoArray(destination, o + scaledWidth + 1, EVEN, 0);
+			}
+			for (; x < width; ++x)
+				Upscalers.xbr2x(source, width, height, x, y, destination);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "xBR 2x";
+	}
+
+	// the corners of the pixels e, as computed one by one by Upscalers
+	private static IntVector corner(IntVector e, IntVector s1, IntVector s2, IntVector k, IntVector c1,
+			IntVector c2, IntVector o1, IntVector o2) {
+		IntVector along = distance(e, c1).add(distance(e, c2)).add(distance(s1, s2).lanewise(VectorOperators.LSHL, 2));
+		IntVector across = distance(s2, o1).add(distance(s1, o2)).add(distance(e, k).lanewise(VectorOperators.LSHL, 2));
+		VectorMask<Integer> blended = along.lt(across).and(e.compare(VectorOperators.NE, s1))
+				.and(e.compare(VectorOperators.NE, s2));
+		IntVector closest = s2.blend(s1, distance(e, s1).compare(VectorOperators.LE, distance(e, s2)));
+		return e.blend(mean(e, closest), blended);
+	}
+
+	private static IntVector distance(IntVector color1, IntVector color2) {
+		IntVector r = channel(color1, 16).sub(channel(color2, 16));
+		IntVector g = channel(color1, 8).sub(channel(color2, 8));
+		IntVector b = channel(color1, 0).sub(channel(color2, 0));
+		IntVector y = r.mul(77).add(g.mul(150)).add(b.mul(29)).lanewise(VectorOperators.ASHR, 8);
+		return y.abs().mul(48).add(b.sub(y).abs().mul(7)).add(r.sub(y).abs().mul(6));
+	}
+
+	private static IntVector channel(IntVector color, int shift) {
+		return color.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+	}
+
+	private static IntVector mean(IntVector color1, IntVector color2) {
+		return color1.and(color2)
+				.add(color1.lanewise(VectorOperators.XOR, color2).and(0xFEFEFEFE).lanewise(VectorOperators.LSHR, 1));
+	}
+
+}